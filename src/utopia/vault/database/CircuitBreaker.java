@@ -0,0 +1,187 @@
+package utopia.vault.database;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import utopia.flow.structure.Option;
+
+/**
+ * A circuit breaker protects the application when the database server can't be reached. 
+ * After a number of consecutive failed connection attempts the breaker opens and new 
+ * connection attempts fail immediately instead of waiting for the connect timeout. Once the 
+ * cool-down period has passed, a single trial connection is allowed. If the trial succeeds, 
+ * the breaker closes again, otherwise a new cool-down period starts.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ * @see DatabaseSettings#setCircuitBreaker(Option)
+ */
+public class CircuitBreaker
+{
+	// ATTRIBUTES	------------------
+	
+	private final int failureThreshold;
+	private final Duration coolDown;
+	
+	private volatile State state = State.CLOSED;
+	private int consecutiveFailures = 0;
+	private Instant openedAt = Instant.MIN;
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new closed circuit breaker
+	 * @param failureThreshold The number of consecutive failed connection attempts after which 
+	 * the breaker opens
+	 * @param coolDown How long the breaker stays open before a trial connection is allowed
+	 */
+	public CircuitBreaker(int failureThreshold, Duration coolDown)
+	{
+		if (failureThreshold <= 0)
+			throw new IllegalArgumentException("Failure threshold must be positive");
+		
+		this.failureThreshold = failureThreshold;
+		this.coolDown = coolDown;
+	}
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * @return The current state of this breaker
+	 */
+	public State getState()
+	{
+		return this.state;
+	}
+	
+	/**
+	 * @return The number of consecutive failed connection attempts
+	 */
+	public synchronized int getConsecutiveFailures()
+	{
+		return this.consecutiveFailures;
+	}
+	
+	/**
+	 * @return The time when the next trial connection is allowed. None if the breaker is closed.
+	 */
+	public synchronized Option<Instant> getRetryTime()
+	{
+		if (this.state == State.CLOSED)
+			return Option.none();
+		else
+			return Option.some(this.openedAt.plus(this.coolDown));
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	/**
+	 * @return Whether a connection attempt would currently be allowed. This doesn't reserve 
+	 * the trial attempt, so {@link #beforeAttempt()} may still fail.
+	 */
+	public synchronized boolean allowsAttempts()
+	{
+		return this.state == State.CLOSED || (this.state == State.OPEN && 
+				!Instant.now().isBefore(this.openedAt.plus(this.coolDown)));
+	}
+	
+	/**
+	 * Checks whether a connection attempt may be made. When the breaker is open and the 
+	 * cool-down has passed, the calling thread is allowed to make the trial attempt.
+	 * @throws CircuitOpenException If the breaker is open and the attempt should not be made
+	 */
+	public void beforeAttempt() throws CircuitOpenException
+	{
+		// The closed state is checked without locking since it's the common case
+		if (this.state == State.CLOSED)
+			return;
+		
+		synchronized (this)
+		{
+			if (this.state == State.OPEN && !Instant.now().isBefore(this.openedAt.plus(this.coolDown)))
+				this.state = State.HALF_OPEN;
+			else if (this.state != State.CLOSED)
+				throw new CircuitOpenException(this.openedAt.plus(this.coolDown));
+		}
+	}
+	
+	/**
+	 * Records a successful connection attempt. Closes the breaker.
+	 */
+	public synchronized void recordSuccess()
+	{
+		this.consecutiveFailures = 0;
+		this.state = State.CLOSED;
+	}
+	
+	/**
+	 * Records a failed connection attempt. Opens the breaker if the trial attempt failed or 
+	 * if there have been too many consecutive failures.
+	 */
+	public synchronized void recordFailure()
+	{
+		this.consecutiveFailures ++;
+		if (this.state == State.HALF_OPEN || this.consecutiveFailures >= this.failureThreshold)
+		{
+			this.state = State.OPEN;
+			this.openedAt = Instant.now();
+		}
+	}
+	
+	
+	// NESTED CLASSES	--------------
+	
+	/**
+	 * These are the states a circuit breaker can be in
+	 * @author Mikko Hilpinen
+	 * @since 18.10.2026
+	 */
+	public static enum State
+	{
+		/**
+		 * Connection attempts are made normally
+		 */
+		CLOSED, 
+		/**
+		 * Connection attempts fail immediately
+		 */
+		OPEN, 
+		/**
+		 * A single trial connection attempt is being made. Other attempts fail immediately.
+		 */
+		HALF_OPEN;
+	}
+	
+	/**
+	 * These exceptions are thrown when a connection attempt is rejected because the circuit 
+	 * breaker is open
+	 * @author Mikko Hilpinen
+	 * @since 18.10.2026
+	 */
+	public static class CircuitOpenException extends DatabaseUnavailableException
+	{
+		private static final long serialVersionUID = -6912547140913870232L;
+		
+		private final Instant retryTime;
+		
+		/**
+		 * Creates a new exception
+		 * @param retryTime The time when the next trial connection is allowed
+		 */
+		public CircuitOpenException(Instant retryTime)
+		{
+			super("The database has been unavailable. Connection attempts are blocked until " + retryTime);
+			this.retryTime = retryTime;
+		}
+		
+		/**
+		 * @return The time when the next trial connection is allowed
+		 */
+		public Instant getRetryTime()
+		{
+			return this.retryTime;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package utopia.vault.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Connection factories open new JDBC connections. The factory is resolved once from the 
+ * settings so that opening a connection doesn't require any driver lookups.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ * @see DatabaseSettings#setConnectionFactory(utopia.flow.structure.Option)
+ */
+@FunctionalInterface
+public interface ConnectionFactory
+{
+	/**
+	 * Opens a new connection
+	 * @param databaseName The name of the database the connection uses. May be null, in 
+	 * which case no database is selected.
+	 * @return A new open connection
+	 * @throws SQLException If the connection couldn't be opened
+	 */
+	public Connection openConnection(String databaseName) throws SQLException;
+}
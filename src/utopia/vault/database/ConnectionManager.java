@@ -1,14 +1,29 @@
 package utopia.vault.database;
 
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
-import utopia.flow.async.Completion;
 import utopia.flow.async.Volatile;
 import utopia.flow.async.VolatileFlag;
+import utopia.flow.function.ThrowingConsumer;
 import utopia.flow.function.ThrowingFunction;
+import utopia.flow.function.ThrowingSupplier;
 import utopia.flow.structure.ImmutableList;
 import utopia.flow.structure.ImmutableMap;
 import utopia.flow.structure.ListBuilder;
@@ -16,7 +31,7 @@ import utopia.flow.structure.Option;
 import utopia.flow.structure.Pair;
 import utopia.flow.structure.Try;
 import utopia.flow.util.Counter;
-import utopia.flow.util.WaitUtils;
+import utopia.vault.util.SharedScheduler;
 
 /**
  * ConnectionManagers are used for handling shared connections
@@ -27,38 +42,99 @@ public class ConnectionManager
 {
 	// ATTRIBUTES	--------------------
 	
+	private static final long RETRY_BASE_DELAY_MILLIS = 10;
+	private static final long RETRY_MAX_DELAY_MILLIS = 1000;
+	private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+	// Waiting clients re-check the pool at least this often, in case a release wasn't signalled
+	private static final long RELEASE_CHECK_INTERVAL_MILLIS = 100;
+	private static final Duration DEFAULT_EXCLUSIVE_WAIT_TIMEOUT = Duration.ofSeconds(30);
+	
+	private static final ThreadLocal<WorkloadClass> currentWorkload = new ThreadLocal<>();
+	
+	private final DatabaseConfiguration configuration;
 	private Option<Consumer<? super String>> debugLogger = Option.none();
 	
 	// (connection amount, max clients per connection), Ordered by connection amount.
 	private ImmutableList<Pair<Integer, Integer>> maxClientThresholds;
 	private Volatile<ImmutableList<ReusableConnection>> connections = new Volatile<>(ImmutableList.empty());
+	private final WorkloadBulkhead bulkhead;
 	
 	private Duration connectionKeepAlive;
-	private Volatile<Completion> timeoutCompletion = new Volatile<>(Completion.fulfilled());
-	private Object waitLock = new String();
+	private volatile int minIdle = 0;
+	// Connections idle for longer than this are validated before they're handed to a client
+	private volatile Option<Duration> validationIdleThreshold = Option.none();
+	private volatile int validationTimeoutSeconds = VALIDATION_TIMEOUT_SECONDS;
+	private volatile Duration exclusiveWaitTimeout = DEFAULT_EXCLUSIVE_WAIT_TIMEOUT;
+	private Option<ScheduledFuture<?>> keepAliveTask = Option.none();
+	// The pings block, so they're run outside the shared scheduler
+	private final ExecutorService pingExecutor = SharedScheduler.newWorkerExecutor("Vault-Connection-Ping", 1);
+	private final AtomicBoolean pingQueued = new AtomicBoolean(false);
+	private final LeakTracker leakTracker = new LeakTracker();
+	private final ConnectionPoolStatistics statistics = new ConnectionPoolStatistics();
+	private volatile ConnectionPoolMetrics metrics = ConnectionPoolMetrics.NONE;
+	private Option<ObjectName> jmxName = Option.none();
+	private final Object reaperLock = new Object();
+	// The task that closes the expired idle connections. Guarded by reaperLock.
+	private Option<ScheduledFuture<?>> reaperTask = Option.none();
+	// Set inside the connection list's lock, so that no connections are added after shutdown
+	private volatile boolean shutDown = false;
+	// Notified when a connection is released while clients are waiting for one
+	private final Object releaseLock = new Object();
+	private final AtomicInteger waitingForRelease = new AtomicInteger();
 	
 	
 	// CONSTRUCTOR	--------------------
 	
 	/**
-	 * Creates a new connection manager
+	 * Creates a new connection manager that uses the default database configuration
 	 * @param connectionKeepAlive The maximum idle duration of a connection before it is closed
 	 * @param maxClientThresholds Thresholds for each client amount update (connection amount -> max client amount per connection)
 	 */
 	public ConnectionManager(Duration connectionKeepAlive, ImmutableMap<Integer, Integer> maxClientThresholds)
 	{
+		this(DatabaseSettings.getDefaultConfiguration(), connectionKeepAlive, maxClientThresholds);
+	}
+	
+	/**
+	 * Creates a new connection manager
+	 * @param configuration The configuration used when opening the connections. All queries 
+	 * made through this manager use this configuration's server.
+	 * @param connectionKeepAlive The maximum idle duration of a connection before it is closed
+	 * @param maxClientThresholds Thresholds for each client amount update (connection amount -> max client amount per connection)
+	 */
+	public ConnectionManager(DatabaseConfiguration configuration, Duration connectionKeepAlive, 
+			ImmutableMap<Integer, Integer> maxClientThresholds)
+	{
+		this.configuration = configuration;
 		this.connectionKeepAlive = connectionKeepAlive;
 		this.maxClientThresholds = maxClientThresholds.toList().sortedBy(p -> p.first());
+		this.bulkhead = new WorkloadBulkhead(getLeaseCapacity());
 	}
 	
 	/**
-	 * Creates a new connection manager
+	 * Creates a new connection manager that uses the default database configuration
 	 * @param maxConnections The total maximum amount of connections
 	 * @param clientsPerConnectionCap The maximum amount of clients when connections at maximum
 	 * @param connectionKeepAlive The maximum idle duration of a connection before it is closed
 	 */
 	public ConnectionManager(int maxConnections, int clientsPerConnectionCap, Duration connectionKeepAlive)
 	{
+		this(DatabaseSettings.getDefaultConfiguration(), maxConnections, clientsPerConnectionCap, 
+				connectionKeepAlive);
+	}
+	
+	/**
+	 * Creates a new connection manager
+	 * @param configuration The configuration used when opening the connections. All queries 
+	 * made through this manager use this configuration's server.
+	 * @param maxConnections The total maximum amount of connections
+	 * @param clientsPerConnectionCap The maximum amount of clients when connections at maximum
+	 * @param connectionKeepAlive The maximum idle duration of a connection before it is closed
+	 */
+	public ConnectionManager(DatabaseConfiguration configuration, int maxConnections, int clientsPerConnectionCap, 
+			Duration connectionKeepAlive)
+	{
+		this.configuration = configuration;
 		this.connectionKeepAlive = connectionKeepAlive;
 		
 		int currentMax = 1;
@@ -83,29 +159,72 @@ public class ConnectionManager
 		buffer.add(new Pair<>(maxConnections, clientsPerConnectionCap));
 		
 		this.maxClientThresholds = buffer.result();
+		this.bulkhead = new WorkloadBulkhead(getLeaseCapacity());
 	}
 	
 	
 	// OTHER	------------------------
 	
 	/**
-	 * Provides access to a connection for a client
-	 * @param client A client function that uses the provided connection
+	 * Performs an operation as a client of a workload class. Each connection the current thread 
+	 * requests from a connection manager during the operation counts against the class' share 
+	 * of that manager's capacity (max connections * max clients per connection). If the class 
+	 * or the whole manager is at capacity, the thread waits until a connection is released, 
+	 * the clients of higher priority classes being served first. Connections requested 
+	 * outside of any workload class are never delayed, but they do use the capacity.
+	 * @param workload The workload class of the operation
+	 * @param operation The operation performed
+	 * @return The operation's result. Failure if the operation failed.
 	 */
-	public void getConnection(Consumer<? super Database> client)
+	public static <T> Try<T> withWorkload(WorkloadClass workload, ThrowingSupplier<? extends T, ?> operation)
 	{
-		ReusableConnection connection = getConnection();
-		
+		WorkloadClass previous = currentWorkload.get();
+		currentWorkload.set(workload);
 		try
 		{
-			client.accept(connection.connection);
+			return Try.success(operation.throwingGet());
+		}
+		catch (Exception e)
+		{
+			return Try.failure(e);
 		}
 		finally
 		{
-			connection.leave();
+			if (previous == null)
+				currentWorkload.remove();
+			else
+				currentWorkload.set(previous);
 		}
 	}
 	
+	/**
+	 * Provides access to a connection for a client
+	 * @param client A client function that uses the provided connection
+	 */
+	public void getConnection(Consumer<? super Database> client)
+	{
+		mapConnection(db -> 
+		{
+			client.accept(db);
+			return null;
+		});
+	}
+	
+	/**
+	 * Provides access to a connection for a client. Connections that already use the 
+	 * provided database are preferred so that the database doesn't need to be switched.
+	 * @param databaseName The name of the database the client will use
+	 * @param client A client function that uses the provided connection
+	 */
+	public void getConnection(String databaseName, Consumer<? super Database> client)
+	{
+		mapConnection(databaseName, db -> 
+		{
+			client.accept(db);
+			return null;
+		});
+	}
+	
 	/**
 	 * Provides access to a connection for a client
 	 * @param client A client function that uses the provided connection
@@ -113,26 +232,458 @@ public class ConnectionManager
 	 */
 	public <T> T mapConnection(Function<? super Database, ? extends T> client)
 	{
-		ReusableConnection connection = getConnection();
-		
 		try
 		{
-			return client.apply(connection.connection);
+			return useSharedConnection(Option.none(), client);
 		}
-		finally
+		catch (DatabaseUnavailableException e)
 		{
-			connection.leave();
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Provides access to a connection for a client. Connections that already use the 
+	 * provided database are preferred so that the database doesn't need to be switched.
+	 * @param databaseName The name of the database the client will use
+	 * @param client A client function that uses the provided connection
+	 * @return The return value of the client
+	 */
+	public <T> T mapConnection(String databaseName, Function<? super Database, ? extends T> client)
+	{
+		try
+		{
+			return useSharedConnection(Option.some(databaseName), client);
+		}
+		catch (DatabaseUnavailableException e)
+		{
+			throw new IllegalStateException(e.getMessage(), e);
 		}
 	}
 	
 	/**
 	 * Provides access to a connection for a client. Caches exceptions
 	 * @param client A client function that uses the provided connection
-	 * @return The return value of the client. Failure if function threw
+	 * @return The return value of the client. Failure if function threw or if the manager 
+	 * has been shut down
 	 */
 	public <T> Try<T> tryConnection(ThrowingFunction<? super Database, T, ?> client)
 	{
-		return mapConnection(client);
+		try
+		{
+			return useSharedConnection(Option.none(), client);
+		}
+		catch (DatabaseUnavailableException e)
+		{
+			return Try.failure(e);
+		}
+	}
+	
+	/**
+	 * Provides access to a connection for a client. Caches exceptions. Connections that 
+	 * already use the provided database are preferred.
+	 * @param databaseName The name of the database the client will use
+	 * @param client A client function that uses the provided connection
+	 * @return The return value of the client. Failure if function threw or if the manager 
+	 * has been shut down
+	 */
+	public <T> Try<T> tryConnection(String databaseName, ThrowingFunction<? super Database, T, ?> client)
+	{
+		try
+		{
+			return useSharedConnection(Option.some(databaseName), client);
+		}
+		catch (DatabaseUnavailableException e)
+		{
+			return Try.failure(e);
+		}
+	}
+	
+	/**
+	 * Provides a client with a connection that isn't shared with any other client while the 
+	 * client uses it. Exclusive connections should be used for transactions. If there are no 
+	 * idle connections and the pool has reached its maximum number of connections, the client 
+	 * waits until a connection is released (see {@link #setExclusiveWaitTimeout(Duration)}).
+	 * @param client A client function that uses the provided connection
+	 * @return The return value of the client
+	 * @throws DatabaseUnavailableException If no connection was released before the timeout, 
+	 * if the thread was interrupted while waiting or if the manager has been shut down
+	 */
+	public <T> T mapExclusiveConnection(Function<? super Database, ? extends T> client) throws 
+			DatabaseUnavailableException
+	{
+		Option<WorkloadClass> workload = new Option<>(currentWorkload.get());
+		return useConnection(getExclusiveConnection(workload), workload, client);
+	}
+	
+	/**
+	 * Provides a client with a connection that isn't shared with any other client while the 
+	 * client uses it. Caches exceptions.
+	 * @param client A client function that uses the provided connection
+	 * @return The return value of the client. Failure if function threw or if no connection 
+	 * became available
+	 */
+	public <T> Try<T> tryExclusiveConnection(ThrowingFunction<? super Database, T, ?> client)
+	{
+		try
+		{
+			return mapExclusiveConnection(client);
+		}
+		catch (DatabaseUnavailableException e)
+		{
+			return Try.failure(e);
+		}
+	}
+	
+	/**
+	 * Performs a transaction on an exclusive connection. The transaction is committed if the 
+	 * function succeeds and rolled back if it fails. Use {@link Database#withSavepoint(ThrowingFunction)} 
+	 * for partial rollbacks inside the transaction.
+	 * @param isolation The isolation level used in the transaction
+	 * @param transaction The function that performs the transaction's statements
+	 * @return The return value of the function. Failure if the function or the commit failed
+	 */
+	public <T> Try<T> inTransaction(TransactionIsolation isolation, 
+			ThrowingFunction<? super Database, T, ?> transaction)
+	{
+		return inTransaction(isolation, 1, transaction);
+	}
+	
+	/**
+	 * Performs a transaction on an exclusive connection. The transaction is committed if the 
+	 * function succeeds and rolled back if it fails. If the transaction fails because of a 
+	 * deadlock or a lock wait timeout, it is retried after a randomised, growing delay. 
+	 * Only idempotent transactions should be retried, since the function is run again from 
+	 * the beginning.
+	 * @param isolation The isolation level used in the transaction
+	 * @param maxAttempts The maximum number of times the transaction is attempted
+	 * @param transaction The function that performs the transaction's statements
+	 * @return The return value of the function. Failure if the function or the commit failed 
+	 * on the last attempt
+	 */
+	public <T> Try<T> inTransaction(TransactionIsolation isolation, int maxAttempts, 
+			ThrowingFunction<? super Database, T, ?> transaction)
+	{
+		int attempt = 1;
+		while (true)
+		{
+			Try<T> result;
+			try
+			{
+				result = mapExclusiveConnection(db -> runTransaction(db, isolation, transaction));
+			}
+			catch (DatabaseUnavailableException e)
+			{
+				result = Try.failure(e);
+			}
+			if (attempt >= maxAttempts || !result.failure().exists(ConnectionManager::isRetryable))
+				return result;
+			
+			// Waits a random time that grows with each attempt (full jitter)
+			long maxDelayMillis = Math.min(RETRY_MAX_DELAY_MILLIS, RETRY_BASE_DELAY_MILLIS << Math.min(attempt, 16));
+			int nextAttempt = attempt + 1;
+			debugLog(() -> "Transaction failed due to a lock conflict. Retrying (attempt " + nextAttempt + ")");
+			try
+			{
+				Thread.sleep(ThreadLocalRandom.current().nextLong(maxDelayMillis + 1));
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return result;
+			}
+			
+			attempt ++;
+		}
+	}
+	
+	/**
+	 * Opens and validates connections in advance, so that the first clients don't need to wait 
+	 * for the connections to be opened. This many connections are also kept open while they 
+	 * are idle. This method should be called before the manager starts serving clients.
+	 * @param minIdle The number of connections that are opened and kept open. Limited to the 
+	 * maximum number of connections of this manager.
+	 * @param warmUp A function that is called for each opened connection. It may, for example, 
+	 * prepare the most common statements and initialise the columns of the used tables 
+	 * (see {@link utopia.vault.generics.Table#getColumns()}). None if no warm-up is needed.
+	 * @return The number of connections that were opened. Failure if a connection couldn't be 
+	 * opened, validated or warmed up.
+	 */
+	public Try<Integer> prestart(int minIdle, Option<? extends ThrowingConsumer<? super Database, ?>> warmUp)
+	{
+		if (shutDown)
+			return Try.failure(new IllegalStateException("The connection manager has been shut down"));
+		int targetIdle = Math.min(minIdle, getMaxConnections());
+		this.minIdle = targetIdle;
+		
+		int missing = targetIdle - connections.get().size();
+		for (int i = 0; i < missing; i++)
+		{
+			// Other clients can't join the connection before it has been warmed up
+			// The shutdown flag is checked inside the list's lock, like when leasing connections
+			Option<ReusableConnection> added = connections.pop(all -> 
+			{
+				if (shutDown)
+					return new Pair<>(Option.none(), all);
+				
+				ReusableConnection newConnection = new ReusableConnection(configuration, debugLogger, 
+						this::closeUnusedConnections);
+				newConnection.exclusive = true;
+				return new Pair<>(Option.some(newConnection), all.plus(newConnection));
+			});
+			if (added.isEmpty())
+				return Try.failure(new IllegalStateException("The connection manager has been shut down"));
+			
+			ReusableConnection connection = added.get();
+			connectionCreated();
+			
+			try
+			{
+				Database db = connection.connection;
+				if (!db.getOpenConnection().isValid(validationTimeoutSeconds))
+					throw new DatabaseUnavailableException("Opened connection is not valid");
+				if (warmUp.isDefined())
+					warmUp.get().throwingAccept(db);
+			}
+			catch (Exception e)
+			{
+				connection.closed.set();
+				connections.update(all -> all.filter(c -> c != connection));
+				connectionClosed();
+				return Try.failure(e);
+			}
+			finally
+			{
+				connection.leave();
+			}
+		}
+		
+		int started = Math.max(missing, 0);
+		debugLog(() -> "Prestarted " + started + " connections");
+		return Try.success(started);
+	}
+	
+	/**
+	 * Enables connection validation. Connections that have been idle for a while are 
+	 * validated before they are handed to a client. Broken connections are closed and 
+	 * reopened transparently.
+	 * @param idleThreshold How long a connection must have been idle before it is validated. 
+	 * Zero if the connections should be validated every time they're borrowed by a client 
+	 * that doesn't share the connection.
+	 * @param timeoutSeconds The maximum time spent on a single validation, in seconds
+	 */
+	public void enableValidation(Duration idleThreshold, int timeoutSeconds)
+	{
+		this.validationTimeoutSeconds = timeoutSeconds;
+		this.validationIdleThreshold = Option.some(idleThreshold);
+	}
+	
+	/**
+	 * Specifies how long a client may wait for an exclusive connection when the pool is at its 
+	 * maximum size. A client that already holds a connection of this manager may otherwise 
+	 * wait for itself.
+	 * @param timeout The maximum wait duration (30 seconds by default)
+	 */
+	public void setExclusiveWaitTimeout(Duration timeout)
+	{
+		this.exclusiveWaitTimeout = timeout;
+	}
+	
+	/**
+	 * Disables the connection validation on borrow
+	 */
+	public void disableValidation()
+	{
+		this.validationIdleThreshold = Option.none();
+	}
+	
+	/**
+	 * Starts pinging the idle connections periodically, so that the server or the network 
+	 * doesn't drop them (e.g. because of the server's wait_timeout). Broken connections are 
+	 * closed and reopened when they're used the next time.
+	 * @param interval The interval between the pings. Should be shorter than the server's 
+	 * wait_timeout.
+	 */
+	public synchronized void enableKeepAlive(Duration interval)
+	{
+		keepAliveTask.forEach(task -> task.cancel(false));
+		keepAliveTask = Option.some(SharedScheduler.scheduleRepeating(this::requestPing, interval));
+	}
+	
+	/**
+	 * Stops pinging the idle connections
+	 */
+	public synchronized void disableKeepAlive()
+	{
+		keepAliveTask.forEach(task -> task.cancel(false));
+		keepAliveTask = Option.none();
+	}
+	
+	/**
+	 * @return The tracker that counts the connection leases of this manager's clients. Leak 
+	 * detection can be enabled through the tracker.
+	 */
+	public LeakTracker getLeakTracker()
+	{
+		return leakTracker;
+	}
+	
+	/**
+	 * @return The statistics of this manager's connections and leases. The statistics are 
+	 * collected regardless of whether other metrics have been set.
+	 */
+	public ConnectionPoolStatistics getStatistics()
+	{
+		return statistics;
+	}
+	
+	/**
+	 * Sets the metrics that receive this manager's connection events in addition to the 
+	 * built-in statistics. This can be used for connecting the pool to an external metrics 
+	 * system.
+	 * @param metrics The new metrics. {@link ConnectionPoolMetrics#NONE} if no additional 
+	 * metrics should be used.
+	 */
+	public void setMetrics(ConnectionPoolMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return The current state of this manager's connections
+	 */
+	public ConnectionPoolSnapshot getSnapshot()
+	{
+		return new ConnectionPoolSnapshot(connections.get().map(c -> c.getCurrentClientAmount()), 
+				leakTracker.getOutstandingLeases());
+	}
+	
+	/**
+	 * Registers this manager to the platform MBean server, so that its state and statistics 
+	 * can be monitored through JMX. A previous registration of this manager is removed.
+	 * @param name The name that separates this manager from the other managers
+	 * @throws JMException If the registration failed, for example because another manager was 
+	 * already registered with the same name
+	 */
+	public synchronized void registerJmx(String name) throws JMException
+	{
+		unregisterJmx();
+		ObjectName objectName = new ObjectName("utopia.vault:type=ConnectionManager,name=" + 
+				ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(
+				new ConnectionManagerMonitor(this), ConnectionManagerMXBean.class, true), objectName);
+		jmxName = Option.some(objectName);
+	}
+	
+	/**
+	 * Removes this manager from the platform MBean server, if it was registered
+	 * @throws JMException If the registration couldn't be removed
+	 */
+	public synchronized void unregisterJmx() throws JMException
+	{
+		if (jmxName.isDefined())
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(jmxName.get());
+			jmxName = Option.none();
+		}
+	}
+	
+	/**
+	 * @param workload A workload class
+	 * @return The number of connection leases the clients of the class currently hold in this 
+	 * manager
+	 */
+	public int getActiveLeases(WorkloadClass workload)
+	{
+		return bulkhead.getActive(workload);
+	}
+	
+	/**
+	 * @return The number of clients waiting for their workload class to have room
+	 */
+	public int getWaitingClients()
+	{
+		return bulkhead.getWaiting();
+	}
+	
+	/**
+	 * @return Whether this manager has been shut down
+	 */
+	public boolean isShutDown()
+	{
+		return shutDown;
+	}
+	
+	/**
+	 * Shuts this manager down. The manager stops providing connections, waits for the active 
+	 * clients to leave and then closes all of its connections. The idle connection reaper and 
+	 * the keep-alive pings are stopped. The clients still waiting for a connection are woken 
+	 * up. After this, all connection requests fail: exclusive connections and the try-methods 
+	 * with a {@link DatabaseUnavailableException}, the other methods with an 
+	 * {@link IllegalStateException}.
+	 * @param timeout The maximum duration to wait for the active clients
+	 * @return Whether all clients left before the timeout. The connections of the clients 
+	 * that didn't leave in time are closed once those clients leave.
+	 */
+	public boolean shutdown(Duration timeout)
+	{
+		Instant deadline = Instant.now().plus(timeout);
+		connections.update(all -> 
+		{
+			shutDown = true;
+			return all;
+		});
+		debugLog(() -> "Shutting down");
+		// Wakes up the clients waiting for their workload class to have room
+		bulkhead.shutdown();
+		
+		disableKeepAlive();
+		synchronized (reaperLock)
+		{
+			reaperTask.forEach(task -> task.cancel(false));
+			reaperTask = Option.none();
+		}
+		
+		// Waits for the active clients to leave
+		boolean interrupted = false;
+		synchronized (releaseLock)
+		{
+			// Wakes up the clients waiting for an exclusive connection
+			releaseLock.notifyAll();
+			while (connections.get().exists(c -> c.isInUse()))
+			{
+				long remainingMillis = Duration.between(Instant.now(), deadline).toMillis();
+				if (remainingMillis <= 0)
+					break;
+				
+				try
+				{
+					releaseLock.wait(remainingMillis);
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+					break;
+				}
+			}
+		}
+		boolean drained = !connections.get().exists(c -> c.isInUse());
+		
+		ImmutableList<ReusableConnection> closing = connections.pop(all -> new Pair<>(all, ImmutableList.empty()));
+		debugLog(() -> "Closing " + closing.size() + " connections");
+		closing.forEach(c -> 
+		{
+			c.tryClose();
+			connectionClosed();
+		});
+		
+		pingExecutor.shutdown();
+		leakTracker.disable();
+		Try.run(this::unregisterJmx);
+		
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		return drained;
 	}
 	
 	/**
@@ -142,80 +693,360 @@ public class ConnectionManager
 	public void enableDebugLogs(Consumer<? super String> logger)
 	{
 		this.debugLogger = Option.some(logger);
-		debugLog("Starting debug logs. Connection max thresholds: " + maxClientThresholds);
+		debugLog(() -> "Starting debug logs. Connection max thresholds: " + maxClientThresholds);
 	}
 	
-	private ReusableConnection getConnection()
+	private <T> T useSharedConnection(Option<String> databaseName, 
+			Function<? super Database, ? extends T> client) throws DatabaseUnavailableException
 	{
-		return connections.pop(all -> 
+		Option<WorkloadClass> workload = new Option<>(currentWorkload.get());
+		return useConnection(getConnection(databaseName, workload), workload, client);
+	}
+	
+	// The workload is the one the connection was acquired for. The thread's workload may 
+	// change while the connection is used.
+	private <T> T useConnection(ReusableConnection connection, Option<WorkloadClass> workload, 
+			Function<? super Database, ? extends T> client)
+	{
+		LeakTracker.Lease lease = leakTracker.acquire(connection);
+		long acquireTime = System.nanoTime();
+		try
+		{
+			return client.apply(connection.connection);
+		}
+		finally
+		{
+			long holdNanos = System.nanoTime() - acquireTime;
+			statistics.leaseReleased(holdNanos);
+			metrics.leaseReleased(holdNanos);
+			leakTracker.release(lease);
+			connection.leave();
+			bulkhead.release(workload);
+			
+			if (shutDown || waitingForRelease.get() > 0)
+			{
+				synchronized (releaseLock)
+				{
+					releaseLock.notifyAll();
+				}
+			}
+		}
+	}
+	
+	private ReusableConnection getConnection(Option<String> databaseName, Option<WorkloadClass> workload)
+			throws DatabaseUnavailableException
+	{
+		long waitStart = System.nanoTime();
+		bulkhead.acquire(workload);
+		ReusableConnection lease = connections.pop(all -> 
 		{
+			if (shutDown)
+				return new Pair<>(null, all);
+			
 			// Finds the maximum clients per connection treshold
 			int maxClients = getMaxClientsPerConnection(all.size());
 			
+			// Prefers the connections that already use the requested database
+			ReusableConnection reusable = databaseName.isDefined() ? 
+					joinLeastLoaded(all, databaseName.get(), maxClients) : null;
+			
 			// Returns the first reusable connection, if no such connection exists, creates a new connection
-			// Tries to use the connection with least clients
-			Option<ReusableConnection> reusable = all.minBy(c -> c.getCurrentClientAmount()).filter(
-					c -> c.tryJoin(maxClients));
+			// Tries to use the connection with least clients. Connections that can't be joined 
+			// (exclusive or full) are skipped.
+			if (reusable == null)
+				reusable = joinLeastLoaded(all, null, maxClients);
 			
-			if (reusable.isDefined())
-				return new Pair<>(reusable.get(), all);
+			if (reusable != null)
+				return new Pair<>(reusable, all);
 			else
 			{
-				ReusableConnection newConnection = new ReusableConnection(debugLogger, this::closeUnusedConnections);
-				debugLog("New connection (" + newConnection.index + ") created. Now at " + (all.size() + 1) + " connections");
+				ReusableConnection newConnection = new ReusableConnection(configuration, debugLogger, 
+						this::closeUnusedConnections);
+				connectionCreated();
+				debugLog(() -> "New connection (" + newConnection.index + ") created. Now at " + (all.size() + 1) + " connections");
 				return new Pair<>(newConnection, all.plus(newConnection));
 			}
 		});
+		
+		checkLeased(lease, workload);
+		validateOnBorrow(lease);
+		leaseAcquired(waitStart);
+		return lease;
 	}
 	
-	private void closeUnusedConnections()
+	private ReusableConnection getExclusiveConnection(Option<WorkloadClass> workload) throws 
+			DatabaseUnavailableException
 	{
-		// Makes sure connection closing is active
-		timeoutCompletion.update(old -> 
+		long waitStart = System.nanoTime();
+		bulkhead.acquire(workload);
+		
+		// Waits until a connection is released if the pool is at its maximum size
+		ReusableConnection lease = tryReserveExclusiveConnection();
+		if (lease == null && !shutDown)
 		{
-			// Only a single close thread is active at a time
-			if (old.isFulfilled())
+			long deadline = System.nanoTime() + exclusiveWaitTimeout.toNanos();
+			waitingForRelease.incrementAndGet();
+			try
 			{
-				return Completion.ofAsynchronous(() -> 
+				synchronized (releaseLock)
 				{
-					debugLog("Starting timeout thread");
-					Option<Instant> nextWait = Option.some(Instant.now().plus(connectionKeepAlive));
-					
-					// Closes connections as long as they are queued to be closed
-					while (nextWait.isDefined())
+					while ((lease = tryReserveExclusiveConnection()) == null && !shutDown)
 					{
-						WaitUtils.waitUntil(nextWait.get(), waitLock);
+						long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+						if (remainingMillis <= 0)
+							throw new DatabaseUnavailableException(
+									"Timed out while waiting for an exclusive connection");
 						
-						// Updates the connections list and determines next close time
-						nextWait = connections.pop(all -> 
-						{
-							// Keeps the connections that are still open
-							Instant closeThreshold = Instant.now().minus(connectionKeepAlive);
-							ImmutableMap<Boolean, ImmutableList<ReusableConnection>> closedAndOpen = all.divideBy(
-									c -> c.isOpen(closeThreshold));
-							
-							ImmutableList<ReusableConnection> open = closedAndOpen.get(true);
-							
-							// Terminates connections on closed items
-							ImmutableList<ReusableConnection> closing = closedAndOpen.get(false);
-							debugLog("Closing " + closing.size() + " connections. Remaining: " + open.size());
-							closing.forEach(c -> c.tryClose());
-							
-							// Calculates the time when the next connection will be closed
-							Option<Instant> lastLeaveTime = open.filter(c -> !c.isInUse()).mapMin(c -> c.lastLeaveTime);
-							
-							return new Pair<>(lastLeaveTime.map(t -> t.plus(connectionKeepAlive)), open);
-						});
+						releaseLock.wait(Math.min(remainingMillis, RELEASE_CHECK_INTERVAL_MILLIS));
 					}
-					
-					debugLog("Closing timeout thread");
-				});
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				bulkhead.release(workload);
+				throw new DatabaseUnavailableException("Interrupted while waiting for an exclusive connection", e);
+			}
+			catch (DatabaseUnavailableException e)
+			{
+				bulkhead.release(workload);
+				throw e;
+			}
+			finally
+			{
+				waitingForRelease.decrementAndGet();
 			}
+		}
+		
+		checkLeased(lease, workload);
+		validateOnBorrow(lease);
+		leaseAcquired(waitStart);
+		return lease;
+	}
+	
+	// Returns null if the manager was shut down or if all connections are in use and the pool is full
+	private ReusableConnection tryReserveExclusiveConnection()
+	{
+		return connections.pop(all -> 
+		{
+			if (shutDown)
+				return new Pair<>(null, all);
+			
+			// Uses an idle connection, if there is one
+			Option<ReusableConnection> idle = all.find(c -> c.tryJoinExclusive());
+			
+			if (idle.isDefined())
+				return new Pair<>(idle.get(), all);
+			else if (all.size() >= getMaxConnections())
+				return new Pair<>(null, all);
 			else
-				return old;
+			{
+				ReusableConnection newConnection = new ReusableConnection(configuration, debugLogger, 
+						this::closeUnusedConnections);
+				newConnection.exclusive = true;
+				connectionCreated();
+				debugLog(() -> "New exclusive connection (" + newConnection.index + ") created. Now at " + 
+						(all.size() + 1) + " connections");
+				return new Pair<>(newConnection, all.plus(newConnection));
+			}
+		});
+	}
+	
+	// Joins the least loaded connection that accepts a new client. The connections are 
+	// scanned in a single pass without allocating, since this is done while holding the 
+	// connection list's lock. Returns null if no connection could be joined.
+	private static ReusableConnection joinLeastLoaded(ImmutableList<ReusableConnection> connections, 
+			String databaseName, int maxClients)
+	{
+		ReusableConnection leastLoaded = null;
+		int leastClients = Integer.MAX_VALUE;
+		for (ReusableConnection connection : connections)
+		{
+			int clients = connection.getCurrentClientAmount();
+			if (clients < leastClients && connection.canJoin(maxClients) && 
+					(databaseName == null || connection.isUsing(databaseName)))
+			{
+				leastLoaded = connection;
+				leastClients = clients;
+			}
+		}
+		
+		if (leastLoaded != null && leastLoaded.tryJoin(maxClients))
+			return leastLoaded;
+		else
+			return null;
+	}
+	
+	// A missing lease means that the manager was shut down while the client was waiting
+	private void checkLeased(ReusableConnection lease, Option<WorkloadClass> workload) throws 
+			DatabaseUnavailableException
+	{
+		if (lease == null)
+		{
+			bulkhead.release(workload);
+			throw new DatabaseUnavailableException("The connection manager has been shut down");
+		}
+	}
+	
+	private void validateOnBorrow(ReusableConnection lease)
+	{
+		validationIdleThreshold.forEach(threshold -> 
+		{
+			if (!lease.validateIfIdle(Instant.now().minus(threshold), validationTimeoutSeconds))
+			{
+				validationFailed();
+				debugLog(() -> "Connection " + lease.index + " was broken and will be reopened");
+			}
+		});
+	}
+	
+	// Hands the pings off to the ping thread, unless the previous round is still waiting
+	private void requestPing()
+	{
+		if (pingQueued.compareAndSet(false, true))
+		{
+			try
+			{
+				pingExecutor.execute(this::pingIdleConnections);
+			}
+			catch (RejectedExecutionException e)
+			{
+				// The manager was shut down
+				pingQueued.set(false);
+			}
+		}
+	}
+	
+	private void pingIdleConnections()
+	{
+		pingQueued.set(false);
+		int timeout = validationTimeoutSeconds;
+		connections.get().forEach(c -> 
+		{
+			if (!c.pingIfUnused(timeout))
+			{
+				validationFailed();
+				debugLog(() -> "Idle connection " + c.index + " was broken and has been closed");
+			}
 		});
 	}
 	
+	private void closeUnusedConnections()
+	{
+		// Makes sure the reaper is scheduled. Only a single reaper task is scheduled at a time.
+		synchronized (reaperLock)
+		{
+			if (reaperTask.isEmpty() && !shutDown)
+				reaperTask = Option.some(SharedScheduler.schedule(this::reapIdleConnections, connectionKeepAlive));
+		}
+	}
+					
+	private void reapIdleConnections()
+	{
+		Instant now = Instant.now();
+		Instant closeThreshold = now.minus(connectionKeepAlive);
+		ImmutableList<ReusableConnection> all = connections.get();
+		ImmutableList<ReusableConnection> expired = all.filter(c -> !c.isOpen(closeThreshold));
+						
+		// Keeps the minimum amount of connections open. Their idle time starts again.
+		int retainedAmount = Math.max(0, Math.min(minIdle - (all.size() - expired.size()), expired.size()));
+		expired.take(retainedAmount).forEach(c -> c.lastLeaveTime = now);
+							
+		// The connection list is only modified when connections are closed
+		ImmutableList<ReusableConnection> closing = expired.drop(retainedAmount);
+		if (!closing.isEmpty())
+		{
+			connections.update(current -> current.filter(c -> !closing.contains(c)));
+			debugLog(() -> "Closing " + closing.size() + " connections. Remaining: " + (all.size() - closing.size()));
+			closing.forEach(c -> 
+			{
+				c.tryClose();
+				connectionClosed();
+			});
+		}
+							
+		// Schedules the next run to the time when the next idle connection expires
+		synchronized (reaperLock)
+		{
+			Option<Instant> nextExpiration = connections.get().filter(c -> !c.isInUse()).mapMin(
+					c -> c.lastLeaveTime).map(t -> t.plus(connectionKeepAlive));
+			if (nextExpiration.isDefined() && !shutDown)
+				reaperTask = Option.some(SharedScheduler.schedule(this::reapIdleConnections, 
+						Duration.between(Instant.now(), nextExpiration.get())));
+			else
+				reaperTask = Option.none();
+		}
+	}
+	
+	private static <T> Try<T> runTransaction(Database db, TransactionIsolation isolation, 
+			ThrowingFunction<? super Database, T, ?> transaction)
+	{
+		Option<Integer> previousIsolation = Option.none();
+		try
+		{
+			Connection connection = db.getOpenConnection();
+			if (isolation != TransactionIsolation.DEFAULT)
+			{
+				previousIsolation = Option.some(connection.getTransactionIsolation());
+				connection.setTransactionIsolation(isolation.getJdbcLevel());
+			}
+			
+			db.startTransaction();
+			Try<T> result = transaction.apply(db);
+			
+			if (result.isSuccess())
+				db.commit();
+			else
+				db.rollback();
+			
+			return result;
+		}
+		catch (SQLException | DatabaseUnavailableException e)
+		{
+			Try.run(db::rollback);
+			return Try.failure(e);
+		}
+		finally
+		{
+			// The connection is returned in its original state
+			previousIsolation.forEach(level -> Try.run(() -> db.getOpenConnection().setTransactionIsolation(level)));
+		}
+	}
+	
+	// Deadlocks (1213) and lock wait timeouts (1205) can be resolved by retrying
+	private static boolean isRetryable(Throwable error)
+	{
+		Throwable cause = error;
+		while (cause != null)
+		{
+			if (cause instanceof SQLException)
+			{
+				SQLException sqlError = (SQLException) cause;
+				if (sqlError.getErrorCode() == 1213 || sqlError.getErrorCode() == 1205 || 
+						"40001".equals(sqlError.getSQLState()))
+					return true;
+			}
+			cause = cause.getCause();
+		}
+		
+		return false;
+	}
+	
+	private int getMaxConnections()
+	{
+		return maxClientThresholds.isEmpty() ? Integer.MAX_VALUE : maxClientThresholds.last().first();
+	}
+	
+	// The number of concurrent leases the pool can serve without exceeding its thresholds
+	private int getLeaseCapacity()
+	{
+		if (maxClientThresholds.isEmpty())
+			return Integer.MAX_VALUE;
+		
+		Pair<Integer, Integer> max = maxClientThresholds.last();
+		return (int) Math.min(Integer.MAX_VALUE, (long) max.first() * max.second());
+	}
+	
 	private int getMaxClientsPerConnection(int openConnections)
 	{
 		if (maxClientThresholds.isEmpty())
@@ -228,9 +1059,35 @@ public class ConnectionManager
 		}
 	}
 	
-	private void debugLog(String message)
+	private void connectionCreated()
+	{
+		statistics.connectionCreated();
+		metrics.connectionCreated();
+	}
+	
+	private void connectionClosed()
 	{
-		debugLogger.forEach(l -> l.accept(message));
+		statistics.connectionClosed();
+		metrics.connectionClosed();
+	}
+	
+	private void leaseAcquired(long waitStart)
+	{
+		long waitNanos = System.nanoTime() - waitStart;
+		statistics.leaseAcquired(waitNanos);
+		metrics.leaseAcquired(waitNanos);
+	}
+	
+	private void validationFailed()
+	{
+		statistics.validationFailed();
+		metrics.validationFailed();
+	}
+	
+	// The message is only built when debug logging is enabled
+	private void debugLog(Supplier<String> message)
+	{
+		debugLogger.forEach(l -> l.accept(message.get()));
 	}
 
 	
@@ -246,24 +1103,39 @@ public class ConnectionManager
 		private Option<Consumer<? super String>> debugLogger;
 		
 		private VolatileFlag closed = new VolatileFlag();
+		// Exclusive connections can't be joined by other clients
+		private volatile boolean exclusive = false;
 		
-		private Database connection = new Database();
+		private Database connection;
 		private Volatile<Integer> clients = new Volatile<>(1);
-		private Instant lastLeaveTime = Instant.now();
+		private volatile Instant lastLeaveTime = Instant.now();
 		
 		private Runnable onIdleOperation;
 		
 		
 		// CONSTRUCTOR	--------------------
 		
-		public ReusableConnection(Option<Consumer<? super String>> debugLogger, Runnable onIdleOperation)
+		public ReusableConnection(DatabaseConfiguration configuration, Option<Consumer<? super String>> debugLogger, 
+				Runnable onIdleOperation)
 		{
 			this.index = INDEX_COUNTER.next();
+			this.connection = new Database(null, configuration);
+			// The pooled connections are tracked per client instead
+			this.connection.disableLeakTracking();
 			this.debugLogger = debugLogger;
 			this.onIdleOperation = onIdleOperation;
 		}
 		
 		
+		// IMPLEMENTED METHODS	------------
+		
+		@Override
+		public String toString()
+		{
+			return "Connection " + index;
+		}
+		
+		
 		// OTHER	------------------------
 		
 		public int getCurrentClientAmount()
@@ -276,20 +1148,46 @@ public class ConnectionManager
 			return getCurrentClientAmount() > 0;
 		}
 		
+		public boolean isUsing(String databaseName)
+		{
+			return databaseName.equalsIgnoreCase(connection.getName());
+		}
+		
 		public boolean isOpen(Instant closeThreshold)
 		{
 			return isInUse() || lastLeaveTime.isAfter(closeThreshold);
 		}
 		
+		// Whether the connection would currently accept a new shared client
+		public boolean canJoin(int maxCapacity)
+		{
+			return clients.get() < maxCapacity && !closed.isSet() && !exclusive;
+		}
+		
 		public boolean tryJoin(int maxCapacity)
 		{
 			return clients.pop(current -> 
 			{
-				if (current >= maxCapacity || closed.isSet())
+				if (current >= maxCapacity || closed.isSet() || exclusive)
+					return new Pair<>(false, current);
+				else
+				{
+					debugLog(() -> "Registered a new client (now at " + (current + 1) + ")");
+					return new Pair<>(true, current + 1);
+				}
+			});
+		}
+		
+		public boolean tryJoinExclusive()
+		{
+			return clients.pop(current -> 
+			{
+				if (current > 0 || closed.isSet())
 					return new Pair<>(false, current);
 				else
 				{
-					debugLog("Registered a new client (now at " + (current + 1) + ")");
+					debugLog(() -> "Registered a new exclusive client");
+					exclusive = true;
 					return new Pair<>(true, current + 1);
 				}
 			});
@@ -298,24 +1196,109 @@ public class ConnectionManager
 		public void leave()
 		{
 			lastLeaveTime = Instant.now();
-			clients.update(current -> 
+			boolean becameIdle = clients.pop(current -> 
 			{
-				debugLog("Client left. Remaining: " + (current - 1));
+				exclusive = false;
+				debugLog(() -> "Client left. Remaining: " + (current - 1));
 				if (current == 1)
 				{
 					if (closed.isSet())
 					{
-						debugLog("Closing connection");
+						debugLog(() -> "Closing connection");
 						connection.close();
 					}
 					else
 					{
-						debugLog("Entering idle mode");
-						onIdleOperation.run();
+						debugLog(() -> "Entering idle mode");
+						return new Pair<>(true, current - 1);
 					}
 				}
-				return current - 1;
+				return new Pair<>(false, current - 1);
+			});
+			
+			// The idle operation is run outside the client lock, since the reaper reads the 
+			// client counts while holding its own lock
+			if (becameIdle)
+				onIdleOperation.run();
+		}
+		
+		// Validates the connection if it has been idle and is only used by the calling client. 
+		// Returns false if the connection was broken (and closed).
+		public boolean validateIfIdle(Instant idleThreshold, int timeoutSeconds)
+		{
+			boolean wasExclusive = exclusive;
+			// Other clients can't join while the connection is being validated
+			boolean validates = clients.pop(current -> 
+			{
+				if (current == 1 && !lastLeaveTime.isAfter(idleThreshold))
+				{
+					exclusive = true;
+					return new Pair<>(true, current);
+				}
+				else
+					return new Pair<>(false, current);
 			});
+			
+			if (!validates)
+				return true;
+			
+			try
+			{
+				if (connection.isValid(timeoutSeconds))
+					return true;
+				else
+				{
+					connection.closeConnection();
+					return false;
+				}
+			}
+			finally
+			{
+				if (!wasExclusive)
+					exclusive = false;
+			}
+		}
+		
+		// Checks an unused connection. Returns false if the connection was broken (and closed).
+		public boolean pingIfUnused(int timeoutSeconds)
+		{
+			// Reserves the connection for the duration of the check
+			boolean reserved = clients.pop(current -> 
+			{
+				if (current == 0 && !closed.isSet())
+				{
+					exclusive = true;
+					return new Pair<>(true, 1);
+				}
+				else
+					return new Pair<>(false, current);
+			});
+			
+			if (!reserved)
+				return true;
+			
+			boolean valid = connection.isValid(timeoutSeconds);
+			if (!valid)
+				connection.closeConnection();
+			
+			// Releases the connection without affecting its idle time
+			boolean becameIdle = clients.pop(current -> 
+			{
+				exclusive = false;
+				if (current == 1 && closed.isSet())
+				{
+					connection.close();
+					return new Pair<>(false, current - 1);
+				}
+				return new Pair<>(current == 1, current - 1);
+			});
+			
+			// The reaper may have skipped this connection during the ping, so it's rescheduled 
+			// like when a client leaves
+			if (becameIdle)
+				onIdleOperation.run();
+			
+			return valid;
 		}
 		
 		public void tryClose()
@@ -324,18 +1307,18 @@ public class ConnectionManager
 			{
 				if (current <= 0)
 				{
-					debugLog("Closing connection");
+					debugLog(() -> "Closing connection");
 					connection.close();
 				}
 				else
-					debugLog("Closes connection after clients have left");
+					debugLog(() -> "Closes connection after clients have left");
 			});
 			closed.set();
 		}
 		
-		private void debugLog(String message)
+		private void debugLog(Supplier<String> message)
 		{
-			debugLogger.forEach(l -> l.accept(index + ": " + message));
+			debugLogger.forEach(l -> l.accept(index + ": " + message.get()));
 		}
 	}
 }
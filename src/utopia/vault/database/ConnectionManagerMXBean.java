@@ -0,0 +1,75 @@
+package utopia.vault.database;
+
+/**
+ * This interface exposes the state of a connection manager through JMX
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ * @see ConnectionManager#registerJmx(String)
+ */
+public interface ConnectionManagerMXBean
+{
+	/**
+	 * @return The number of open connections
+	 */
+	public int getOpenConnections();
+	
+	/**
+	 * @return The number of open connections that aren't used by any client
+	 */
+	public int getIdleConnections();
+	
+	/**
+	 * @return The number of connections that are used by at least one client
+	 */
+	public int getInUseConnections();
+	
+	/**
+	 * @return The total number of clients using the connections
+	 */
+	public int getClients();
+	
+	/**
+	 * @return The number of connection leases that haven't been released
+	 */
+	public long getOutstandingLeases();
+	
+	/**
+	 * @return The number of connections opened by the pool
+	 */
+	public long getConnectionsCreated();
+	
+	/**
+	 * @return The number of connections closed by the pool
+	 */
+	public long getConnectionsClosed();
+	
+	/**
+	 * @return The number of failed connection validations
+	 */
+	public long getValidationFailures();
+	
+	/**
+	 * @return The number of leases acquired by the clients
+	 */
+	public long getLeaseCount();
+	
+	/**
+	 * @return The average time the clients waited for a connection, in milliseconds
+	 */
+	public double getMeanLeaseWaitMillis();
+	
+	/**
+	 * @return The approximate 99th percentile of the connection wait times, in milliseconds
+	 */
+	public double getP99LeaseWaitMillis();
+	
+	/**
+	 * @return The average time the clients held a connection, in milliseconds
+	 */
+	public double getMeanLeaseHoldMillis();
+	
+	/**
+	 * @return The approximate 99th percentile of the connection hold times, in milliseconds
+	 */
+	public double getP99LeaseHoldMillis();
+}
@@ -0,0 +1,112 @@
+package utopia.vault.database;
+
+import java.time.Duration;
+
+/**
+ * This class presents a connection manager's snapshots and statistics to JMX
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+class ConnectionManagerMonitor implements ConnectionManagerMXBean
+{
+	// ATTRIBUTES	------------------
+	
+	private final ConnectionManager manager;
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	ConnectionManagerMonitor(ConnectionManager manager)
+	{
+		this.manager = manager;
+	}
+	
+	
+	// IMPLEMENTED METHODS	----------
+	
+	@Override
+	public int getOpenConnections()
+	{
+		return this.manager.getSnapshot().getOpenConnections();
+	}
+	
+	@Override
+	public int getIdleConnections()
+	{
+		return this.manager.getSnapshot().getIdleConnections();
+	}
+	
+	@Override
+	public int getInUseConnections()
+	{
+		return this.manager.getSnapshot().getInUseConnections();
+	}
+	
+	@Override
+	public int getClients()
+	{
+		return this.manager.getSnapshot().getClients();
+	}
+	
+	@Override
+	public long getOutstandingLeases()
+	{
+		return this.manager.getLeakTracker().getOutstandingLeases();
+	}
+	
+	@Override
+	public long getConnectionsCreated()
+	{
+		return this.manager.getStatistics().getConnectionsCreated();
+	}
+	
+	@Override
+	public long getConnectionsClosed()
+	{
+		return this.manager.getStatistics().getConnectionsClosed();
+	}
+	
+	@Override
+	public long getValidationFailures()
+	{
+		return this.manager.getStatistics().getValidationFailures();
+	}
+	
+	@Override
+	public long getLeaseCount()
+	{
+		return this.manager.getStatistics().getLeaseWaitTimes().getCount();
+	}
+	
+	@Override
+	public double getMeanLeaseWaitMillis()
+	{
+		return toMillis(this.manager.getStatistics().getLeaseWaitTimes().getMean());
+	}
+	
+	@Override
+	public double getP99LeaseWaitMillis()
+	{
+		return toMillis(this.manager.getStatistics().getLeaseWaitTimes().getPercentile(0.99));
+	}
+	
+	@Override
+	public double getMeanLeaseHoldMillis()
+	{
+		return toMillis(this.manager.getStatistics().getLeaseHoldTimes().getMean());
+	}
+	
+	@Override
+	public double getP99LeaseHoldMillis()
+	{
+		return toMillis(this.manager.getStatistics().getLeaseHoldTimes().getPercentile(0.99));
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	private static double toMillis(Duration duration)
+	{
+		return duration.toNanos() / 1_000_000.0;
+	}
+}
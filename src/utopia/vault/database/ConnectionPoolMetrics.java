@@ -0,0 +1,49 @@
+package utopia.vault.database;
+
+/**
+ * Connection pool metrics receive events from a {@link ConnectionManager}. The methods are 
+ * called on the threads that use the connections, so they should return quickly and avoid 
+ * allocating or locking. All methods do nothing by default.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ * @see ConnectionManager#setMetrics(ConnectionPoolMetrics)
+ */
+public interface ConnectionPoolMetrics
+{
+	// ATTRIBUTES	------------------
+	
+	/**
+	 * Metrics that ignore all events
+	 */
+	public static final ConnectionPoolMetrics NONE = new ConnectionPoolMetrics() {};
+	
+	
+	// OTHER METHODS	--------------
+	
+	/**
+	 * This method is called when the pool opens a new connection
+	 */
+	public default void connectionCreated() {}
+	
+	/**
+	 * This method is called when the pool closes a connection
+	 */
+	public default void connectionClosed() {}
+	
+	/**
+	 * This method is called when a client receives a connection
+	 * @param waitNanos How long the client waited for the connection, in nanoseconds
+	 */
+	public default void leaseAcquired(long waitNanos) {}
+	
+	/**
+	 * This method is called when a client releases a connection
+	 * @param holdNanos How long the client held the connection, in nanoseconds
+	 */
+	public default void leaseReleased(long holdNanos) {}
+	
+	/**
+	 * This method is called when a connection fails validation
+	 */
+	public default void validationFailed() {}
+}
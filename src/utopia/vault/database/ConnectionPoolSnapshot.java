@@ -0,0 +1,97 @@
+package utopia.vault.database;
+
+import utopia.flow.structure.ImmutableList;
+
+/**
+ * A snapshot describes the state of a connection pool at a single moment
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ * @see ConnectionManager#getSnapshot()
+ */
+public class ConnectionPoolSnapshot
+{
+	// ATTRIBUTES	------------------
+	
+	private final ImmutableList<Integer> clientsPerConnection;
+	private final long outstandingLeases;
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new snapshot
+	 * @param clientsPerConnection The number of clients for each open connection
+	 * @param outstandingLeases The number of connection leases that haven't been released
+	 */
+	public ConnectionPoolSnapshot(ImmutableList<Integer> clientsPerConnection, long outstandingLeases)
+	{
+		this.clientsPerConnection = clientsPerConnection;
+		this.outstandingLeases = outstandingLeases;
+	}
+	
+	
+	// IMPLEMENTED METHODS	----------
+	
+	@Override
+	public String toString()
+	{
+		return "Open: " + getOpenConnections() + ", in use: " + getInUseConnections() + 
+				", clients: " + this.clientsPerConnection;
+	}
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * @return The number of clients for each open connection
+	 */
+	public ImmutableList<Integer> getClientsPerConnection()
+	{
+		return this.clientsPerConnection;
+	}
+	
+	/**
+	 * @return The number of connection leases that haven't been released
+	 */
+	public long getOutstandingLeases()
+	{
+		return this.outstandingLeases;
+	}
+	
+	/**
+	 * @return The number of open connections
+	 */
+	public int getOpenConnections()
+	{
+		return this.clientsPerConnection.size();
+	}
+	
+	/**
+	 * @return The number of connections that are used by at least one client
+	 */
+	public int getInUseConnections()
+	{
+		return this.clientsPerConnection.filter(clients -> clients > 0).size();
+	}
+	
+	/**
+	 * @return The number of open connections that aren't used by any client
+	 */
+	public int getIdleConnections()
+	{
+		return getOpenConnections() - getInUseConnections();
+	}
+	
+	/**
+	 * @return The total number of clients using the connections
+	 */
+	public int getClients()
+	{
+		int total = 0;
+		for (int clients : this.clientsPerConnection)
+		{
+			total += clients;
+		}
+		return total;
+	}
+}
@@ -0,0 +1,100 @@
+package utopia.vault.database;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import utopia.vault.util.LatencyHistogram;
+
+/**
+ * Connection pool statistics count the events of a single connection manager. The counters 
+ * are updated without locking, so the values read while the pool is in use may be slightly 
+ * out of sync with each other.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ * @see ConnectionManager#getStatistics()
+ */
+public class ConnectionPoolStatistics implements ConnectionPoolMetrics
+{
+	// ATTRIBUTES	------------------
+	
+	private final LongAdder created = new LongAdder();
+	private final LongAdder closed = new LongAdder();
+	private final LongAdder validationFailures = new LongAdder();
+	private final LatencyHistogram leaseWaitTimes = new LatencyHistogram();
+	private final LatencyHistogram leaseHoldTimes = new LatencyHistogram();
+	
+	
+	// IMPLEMENTED METHODS	----------
+	
+	@Override
+	public void connectionCreated()
+	{
+		this.created.increment();
+	}
+	
+	@Override
+	public void connectionClosed()
+	{
+		this.closed.increment();
+	}
+	
+	@Override
+	public void leaseAcquired(long waitNanos)
+	{
+		this.leaseWaitTimes.record(waitNanos);
+	}
+	
+	@Override
+	public void leaseReleased(long holdNanos)
+	{
+		this.leaseHoldTimes.record(holdNanos);
+	}
+	
+	@Override
+	public void validationFailed()
+	{
+		this.validationFailures.increment();
+	}
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * @return The number of connections opened by the pool
+	 */
+	public long getConnectionsCreated()
+	{
+		return this.created.sum();
+	}
+	
+	/**
+	 * @return The number of connections closed by the pool
+	 */
+	public long getConnectionsClosed()
+	{
+		return this.closed.sum();
+	}
+	
+	/**
+	 * @return The number of failed connection validations
+	 */
+	public long getValidationFailures()
+	{
+		return this.validationFailures.sum();
+	}
+	
+	/**
+	 * @return How long the clients have waited for their connections
+	 */
+	public LatencyHistogram getLeaseWaitTimes()
+	{
+		return this.leaseWaitTimes;
+	}
+	
+	/**
+	 * @return How long the clients have held their connections
+	 */
+	public LatencyHistogram getLeaseHoldTimes()
+	{
+		return this.leaseHoldTimes;
+	}
+}
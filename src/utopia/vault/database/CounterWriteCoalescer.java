@@ -0,0 +1,372 @@
+package utopia.vault.database;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import utopia.flow.generics.Value;
+import utopia.flow.structure.Option;
+import utopia.flow.structure.Pair;
+import utopia.flow.structure.Try;
+import utopia.vault.generics.Column;
+import utopia.vault.generics.Table;
+import utopia.vault.generics.Table.NoSuchColumnException;
+import utopia.vault.util.SharedScheduler;
+
+/**
+ * This writer is used for rows that receive a large number of counter increments. Instead of 
+ * performing a separate update for each increment, the increments are accumulated in memory 
+ * and written periodically, using a single 'SET c = c + ?' update for each affected row. 
+ * The updates of each table are sent as a JDBC batch in a single transaction. Increments of 
+ * rows that don't exist are dropped and reported to the missing row listener. 
+ * The increments are delivered at least once: if a write fails, the increments are kept and 
+ * retried on the next flush. The pending increments are lost if the application stops 
+ * without closing the writer. The background flushes are performed on a thread owned by 
+ * the writer, so that a slow database doesn't delay the other scheduled tasks.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class CounterWriteCoalescer implements AutoCloseable
+{
+	// ATTRIBUTES	------------------
+	
+	private final ConcurrentHashMap<CounterKey, Long> deltas = new ConcurrentHashMap<>();
+	private final int flushThreshold;
+	private final AtomicInteger pendingIncrements = new AtomicInteger();
+	private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+	private final Object flushLock = new Object();
+	// Increments hold the read lock, so that none of them is left behind by the final flush
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+	
+	private final ExecutorService flushExecutor = SharedScheduler.newWorkerExecutor("Vault-Counter-Flush", 1);
+	private final ScheduledFuture<?> timer;
+	private volatile boolean closed = false;
+	private Option<Consumer<? super Exception>> failureListener = Option.none();
+	private Option<BiConsumer<? super Table, ? super Value>> missingRowListener = Option.none();
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new writer. The writer starts flushing the increments periodically.
+	 * @param flushInterval The interval between the periodic flushes
+	 * @param flushThreshold The number of increments after which the increments are flushed 
+	 * without waiting for the next periodic flush
+	 */
+	public CounterWriteCoalescer(Duration flushInterval, int flushThreshold)
+	{
+		if (flushThreshold <= 0)
+			throw new IllegalArgumentException("Flush threshold must be positive");
+		
+		this.flushThreshold = flushThreshold;
+		// The scheduler only triggers the flushes
+		this.timer = SharedScheduler.scheduleRepeating(this::requestFlush, flushInterval);
+	}
+	
+	
+	// IMPLEMENTED METHODS	----------
+	
+	/**
+	 * Stops the periodic flushes and writes all pending increments to the database
+	 * @throws DatabaseException If the final write failed. The unwritten increments are kept and 
+	 * can be written by calling flush again.
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 */
+	@Override
+	public void close() throws DatabaseException, DatabaseUnavailableException
+	{
+		this.closeLock.writeLock().lock();
+		try
+		{
+			this.closed = true;
+		}
+		finally
+		{
+			this.closeLock.writeLock().unlock();
+		}
+		this.timer.cancel(false);
+		this.flushExecutor.shutdown();
+		flush();
+	}
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * Specifies a listener that is informed when a background flush fails. The failed 
+	 * increments are retried during the next flush.
+	 * @param listener The listener that receives the errors
+	 */
+	public void setFailureListener(Consumer<? super Exception> listener)
+	{
+		this.failureListener = Option.some(listener);
+	}
+	
+	/**
+	 * Specifies a listener that is informed when the increments of a row couldn't be written 
+	 * because the row doesn't exist. Those increments are dropped.
+	 * @param listener The listener that receives the table and the index of the missing row
+	 */
+	public void setMissingRowListener(BiConsumer<? super Table, ? super Value> listener)
+	{
+		this.missingRowListener = Option.some(listener);
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	/**
+	 * Increments a counter column value
+	 * @param table The table that contains the counter
+	 * @param index The index of the row that is updated
+	 * @param column The counter column
+	 * @param delta The amount the counter is increased by. May be negative.
+	 * @throws NoSuchColumnException If the table doesn't have a primary column
+	 */
+	public void increment(Table table, Value index, Column column, long delta) throws NoSuchColumnException
+	{
+		if (delta == 0)
+			return;
+		CounterKey key = new CounterKey(table, index, column);
+		
+		this.closeLock.readLock().lock();
+		try
+		{
+			if (this.closed)
+				throw new IllegalStateException("The writer has already been closed");
+			this.deltas.merge(key, delta, Long::sum);
+		}
+		finally
+		{
+			this.closeLock.readLock().unlock();
+		}
+		
+		// Flushes early if there are many increments waiting
+		if (this.pendingIncrements.incrementAndGet() >= this.flushThreshold)
+			requestFlush();
+	}
+	
+	/**
+	 * Increments a counter column value
+	 * @param table The table that contains the counter
+	 * @param index The index of the row that is updated
+	 * @param columnVariableName The name of the variable that represents the counter column
+	 * @param delta The amount the counter is increased by. May be negative.
+	 * @throws NoSuchColumnException If the table doesn't have a primary column or the 
+	 * counter column
+	 */
+	public void increment(Table table, Value index, String columnVariableName, long delta) throws
+			NoSuchColumnException
+	{
+		increment(table, index, table.getColumnWithVariableName(columnVariableName), delta);
+	}
+	
+	/**
+	 * Writes all pending increments to the database. Each affected row is updated with a 
+	 * single statement. If a write fails, the unwritten increments are kept for the next flush.
+	 * @throws DatabaseException If a write failed
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 */
+	public void flush() throws DatabaseException, DatabaseUnavailableException
+	{
+		synchronized (this.flushLock)
+		{
+			this.flushRequested.set(false);
+			this.pendingIncrements.set(0);
+			
+			// Takes the current deltas. Increments made during the flush are kept for the next one.
+			Map<Table, Map<RowKey, Map<Column, Long>>> rows = new LinkedHashMap<>();
+			for (CounterKey key : new ArrayList<>(this.deltas.keySet()))
+			{
+				Long delta = this.deltas.remove(key);
+				if (delta != null && delta != 0)
+					rows.computeIfAbsent(key.row.table, t -> new LinkedHashMap<>()).computeIfAbsent(key.row,
+							r -> new LinkedHashMap<>()).put(key.column, delta);
+			}
+			
+			List<Map<RowKey, Map<Column, Long>>> remaining = new ArrayList<>(rows.values());
+			try
+			{
+				while (!remaining.isEmpty())
+				{
+					writeRows(remaining.get(0));
+					remaining.remove(0);
+				}
+			}
+			catch (DatabaseException | DatabaseUnavailableException | RuntimeException e)
+			{
+				// Returns the unwritten deltas so that they are retried
+				for (Map<RowKey, Map<Column, Long>> tableRows : remaining)
+				{
+					tableRows.forEach((row, columnDeltas) -> columnDeltas.forEach((column, delta) -> 
+							this.deltas.merge(new CounterKey(row, column), delta, Long::sum)));
+				}
+				throw e;
+			}
+		}
+	}
+	
+	// Writes the rows of a single table in a single transaction. The map is cleared if the 
+	// write succeeds.
+	@SuppressWarnings("resource")
+	private void writeRows(Map<RowKey, Map<Column, Long>> tableRows) throws DatabaseException, 
+			DatabaseUnavailableException
+	{
+		Table table = tableRows.keySet().iterator().next().table;
+		
+		List<RowKey> rows = new ArrayList<>(tableRows.keySet());
+		List<Pair<ValueAssignment, Condition>> updates = new ArrayList<>(rows.size());
+		for (RowKey row : rows)
+		{
+			ValueAssignment set = new ValueAssignment(false);
+			tableRows.get(row).forEach((column, delta) -> set.appendIncrement(column, Value.Long(delta)));
+			updates.add(new Pair<>(set, ComparisonCondition.createIndexEqualsCondition(table, row.index)));
+		}
+		
+		// The rows of a table are written using a single connection
+		Database connection = new Database(table);
+		int[] counts;
+		try
+		{
+			connection.startTransaction();
+			counts = Database.updateBatch(table, updates, connection);
+			connection.commit();
+		}
+		catch (SQLException e)
+		{
+			Try.run(connection::rollback);
+			throw new DatabaseException(e);
+		}
+		catch (DatabaseException | DatabaseUnavailableException | RuntimeException e)
+		{
+			Try.run(connection::rollback);
+			throw e;
+		}
+		finally
+		{
+			connection.closeConnection();
+		}
+		tableRows.clear();
+		
+		for (int i = 0; i < counts.length; i++)
+		{
+			if (counts[i] == 0)
+			{
+				RowKey row = rows.get(i);
+				this.missingRowListener.forEach(l -> l.accept(table, row.index));
+			}
+		}
+	}
+	
+	// Starts a background flush, unless one is already waiting
+	private void requestFlush()
+	{
+		if (this.flushRequested.compareAndSet(false, true))
+		{
+			try
+			{
+				this.flushExecutor.execute(this::flushInBackground);
+			}
+			catch (RejectedExecutionException e)
+			{
+				// The writer was closed, which flushes the increments
+				this.flushRequested.set(false);
+			}
+		}
+	}
+	
+	private void flushInBackground()
+	{
+		try
+		{
+			flush();
+		}
+		catch (DatabaseException | DatabaseUnavailableException | RuntimeException e)
+		{
+			this.failureListener.forEach(l -> l.accept(e));
+		}
+	}
+	
+	
+	// NESTED CLASSES	--------------
+	
+	private static class RowKey
+	{
+		private final Table table;
+		private final Value index;
+		// Index values are compared in the primary column's type
+		private final Object indexObject;
+		
+		private RowKey(Table table, Value index) throws NoSuchColumnException
+		{
+			this.table = table;
+			this.index = index.castTo(table.getPrimaryColumn().getType());
+			this.indexObject = this.index.getObjectValue();
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(this.table, this.indexObject);
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof RowKey))
+				return false;
+			RowKey other = (RowKey) obj;
+			return this.table.equals(other.table) && Objects.equals(this.indexObject, other.indexObject);
+		}
+	}
+	
+	private static class CounterKey
+	{
+		private final RowKey row;
+		private final Column column;
+		
+		private CounterKey(Table table, Value index, Column column) throws NoSuchColumnException
+		{
+			this(new RowKey(table, index), column);
+		}
+		
+		private CounterKey(RowKey row, Column column)
+		{
+			this.row = row;
+			this.column = column;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(this.row, this.column);
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof CounterKey))
+				return false;
+			CounterKey other = (CounterKey) obj;
+			return this.row.equals(other.row) && this.column.equals(other.column);
+		}
+	}
+}
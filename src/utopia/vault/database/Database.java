@@ -1,30 +1,44 @@
 package utopia.vault.database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Savepoint;
 import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
 
 import utopia.flow.async.Volatile;
 import utopia.flow.generics.DataType;
 import utopia.flow.generics.DataTypeException;
 import utopia.flow.generics.SubTypeSet;
+import utopia.flow.function.ThrowingFunction;
+import utopia.flow.function.ThrowingSupplier;
 import utopia.flow.generics.Value;
 import utopia.flow.structure.ImmutableList;
 import utopia.flow.structure.Option;
 import utopia.flow.structure.Pair;
 import utopia.flow.structure.Try;
+import utopia.vault.database.CombinedCondition.CombinationOperator;
 import utopia.vault.generics.Column;
 import utopia.vault.generics.ColumnVariable;
+import utopia.vault.generics.IndexAllocationException;
+import utopia.vault.generics.IndexAllocator;
 import utopia.vault.generics.SqlDataType;
 import utopia.vault.generics.Table;
 import utopia.vault.generics.TableModel;
 import utopia.vault.generics.Table.NoSuchColumnException;
+import utopia.vault.util.SharedScheduler;
 
 /**
  * The database class is used as an interface for executing various sql queries over a database
@@ -35,8 +49,28 @@ public class Database implements AutoCloseable
 {
 	// ATTRIBUTES	-----------------
 	
-	private String name;
+	// The deadline of the operation the current thread is performing
+	private static final ThreadLocal<Instant> currentDeadline = new ThreadLocal<>();
+	// Tracks the connections held by database instances
+	private static final LeakTracker leakTracker = new LeakTracker();
+	// Whether the current thread's reads must use the primary server instead of the replicas
+	private static final ThreadLocal<Boolean> primaryReads = new ThreadLocal<>();
+	// Statement -> task that cancels the statement once its timeout is reached
+	private static final Map<Statement, ScheduledCancel> scheduledCancels = new ConcurrentHashMap<>();
+	// Cancelling a statement may block, so the cancels are run outside the shared scheduler
+	private static final ExecutorService cancelExecutor = SharedScheduler.newWorkerExecutor(
+			"Vault-Statement-Cancel", 2);
+	
+	private volatile String name;
 	private Volatile<Option<Connection>> connection = new Volatile<>(Option.none());
+	private Option<Duration> queryTimeout = Option.none();
+	private Option<DatabaseConfiguration> configuration = Option.none();
+	// The configuration the current connection was opened with
+	private volatile DatabaseConfiguration connectedConfiguration = null;
+	private boolean leakTracked = true;
+	// The pending cancels of this instance's statements (also listed in scheduledCancels)
+	private final Map<Statement, ScheduledCancel> pendingCancels = new ConcurrentHashMap<>();
+	private volatile LeakTracker.Lease connectionLease = null;
 	
 	
 	// CONSTRUCTOR	-----------------
@@ -50,6 +84,19 @@ public class Database implements AutoCloseable
 		this.name = name;
 	}
 	
+	/**
+	 * Creates a new database interface that always uses the provided configuration, 
+	 * regardless of the configurations the databases have been bound to
+	 * @param name The name of the database. May be null, in which case the database must be 
+	 * specified before the object can be used.
+	 * @param configuration The configuration used for connecting to the server
+	 */
+	public Database(String name, DatabaseConfiguration configuration)
+	{
+		this.name = name;
+		this.configuration = Option.some(configuration);
+	}
+	
 	/**
 	 * Creates a new database interface for the database the provided table uses
 	 * @param table A table
@@ -91,6 +138,46 @@ public class Database implements AutoCloseable
 		return this.name;
 	}
 	
+	/**
+	 * @return The tracker that counts the open connections held by database instances. Leak 
+	 * detection can be enabled through the tracker. Connections managed by connection 
+	 * managers are tracked by the managers instead.
+	 * @see ConnectionManager#getLeakTracker()
+	 */
+	public static LeakTracker getLeakTracker()
+	{
+		return leakTracker;
+	}
+	
+	/**
+	 * @return The configuration used for connecting to the current database
+	 * @see DatabaseSettings#bind(String, DatabaseConfiguration)
+	 */
+	public DatabaseConfiguration getConfiguration()
+	{
+		return this.configuration.getOrElse(() -> DatabaseSettings.getConfiguration(this.name));
+	}
+	
+	/**
+	 * @return The timeout used in the queries of this connection. None if the default timeout 
+	 * should be used.
+	 * @see DatabaseSettings#setDefaultQueryTimeout(Option)
+	 */
+	public Option<Duration> getQueryTimeout()
+	{
+		return this.queryTimeout;
+	}
+	
+	/**
+	 * Changes the timeout used in the queries of this connection. Queries that take longer 
+	 * are cancelled and fail with a {@link QueryTimeoutException}.
+	 * @param timeout The maximum duration of a single query
+	 */
+	public void setQueryTimeout(Duration timeout)
+	{
+		this.queryTimeout = Option.some(timeout);
+	}
+	
 	
 	// OTHER METHODS	-------------
 	
@@ -121,39 +208,58 @@ public class Database implements AutoCloseable
 				return new Pair<>(Try.failure(e), Option.none());
 			}
 			
-		}).unwrapThrowing(e -> new DatabaseUnavailableException(e));
+		}).unwrapThrowing(e -> e instanceof DatabaseUnavailableException ? (DatabaseUnavailableException) e : 
+				new DatabaseUnavailableException(e));
 	}
 	
 	/**
 	 * This method opens a connection to the database. The 
 	 * connection must be closed with {@link #closeConnection()} after the necessary 
 	 * statements have been executed.
-	 * @throws DatabaseUnavailableException If the connection couldn't be opened
-	 * @throws SQLException If the operation failed
+	 * @throws DatabaseUnavailableException If the connection couldn't be opened or if the 
+	 * circuit breaker is open
 	 * @see #closeConnection()
 	 */
 	private Connection openConnection() throws DatabaseUnavailableException
+	{
+		DatabaseConfiguration configuration = getConfiguration();
+		Option<CircuitBreaker> breaker = configuration.getCircuitBreaker();
+		if (breaker.isDefined())
+			breaker.get().beforeAttempt();
+		
+		// The attempt is always recorded, even when the driver throws an error. Otherwise a 
+		// half-open breaker would never be released.
+		Connection connection = null;
+		try
+		{
+			connection = connect(configuration);
+		}
+		finally
+		{
+			if (connection == null)
+				breaker.forEach(CircuitBreaker::recordFailure);
+			else
+				breaker.forEach(CircuitBreaker::recordSuccess);
+		}
+		
+		this.connectedConfiguration = configuration;
+		if (this.leakTracked)
+		{
+			// The lease of a previously closed connection is replaced
+			LeakTracker.Lease previousLease = this.connectionLease;
+			if (previousLease != null)
+				leakTracker.release(previousLease);
+			this.connectionLease = leakTracker.acquire(getName());
+		}
+		return connection;
+	}
+	
+	private Connection connect(DatabaseConfiguration configuration) throws DatabaseUnavailableException
 	{
 		// Tries to form a connection to the database
 		try
 		{
-			Option<String> driver = DatabaseSettings.getDriver();
-			if (driver.isDefined())
-			{
-				try
-				{
-					// Was previously Class.forName(...).newInstance();
-					Class.forName(driver.get()).getDeclaredConstructor().newInstance();
-				}
-				catch (Exception e)
-				{
-					throw new DatabaseUnavailableException("Can't use driver " + driver, e);
-				}
-			}
-			
-			return DriverManager.getConnection(
-					DatabaseSettings.getConnectionTarget() + getName(), 
-					DatabaseSettings.getUser(), DatabaseSettings.getPassword().getValue());
+			return configuration.getConnectionFactory().openConnection(getName());
 		}
 		catch (SQLException e)
 		{
@@ -194,15 +300,59 @@ public class Database implements AutoCloseable
 		}
 	}*/
 	
+	/**
+	 * Checks whether the currently open connection is still usable. This may require a 
+	 * round trip to the server.
+	 * @param timeoutSeconds The maximum time spent on the check, in seconds
+	 * @return Whether the connection is usable. True if there is no open connection, since 
+	 * a new connection is opened when needed.
+	 */
+	public boolean isValid(int timeoutSeconds)
+	{
+		Option<Connection> current = this.connection.get();
+		if (current.isEmpty())
+			return true;
+		
+		try
+		{
+			return !current.get().isClosed() && current.get().isValid(timeoutSeconds);
+		}
+		catch (SQLException e)
+		{
+			return false;
+		}
+	}
+	
 	/**
 	 * Closes a currently open connection to the database.
 	 */
 	public void closeConnection()
 	{
+		// The statements of a closed connection don't need to be cancelled anymore
+		if (!pendingCancels.isEmpty())
+		{
+			for (Statement statement : pendingCancels.keySet())
+			{
+				ScheduledCancel cancel = pendingCancels.remove(statement);
+				if (cancel != null)
+				{
+					scheduledCancels.remove(statement, cancel);
+					cancel.task.cancel(false);
+				}
+			}
+		}
+		
 		connection.update(con -> 
 		{
 			con.forEach(c -> 
 			{
+				LeakTracker.Lease lease = this.connectionLease;
+				if (lease != null)
+				{
+					this.connectionLease = null;
+					leakTracker.release(lease);
+				}
+				
 				try
 				{
 					if (!c.isClosed())
@@ -256,6 +406,7 @@ public class Database implements AutoCloseable
 		try
 		{
 			statement = getOpenConnection().createStatement();
+			applyTimeout(statement);
 			statement.executeUpdate(sqlStatement);
 		}
 		finally
@@ -292,6 +443,7 @@ public class Database implements AutoCloseable
 		{
 			statement = getOpenConnection().prepareStatement(sqlStatement, 
 					autoGeneratedKeys);
+			applyTimeout(statement);
 		}
 		// Closes the statement if the operation fails
 		catch (SQLException | DatabaseUnavailableException e)
@@ -335,10 +487,19 @@ public class Database implements AutoCloseable
 			// The change is simple when a connection is closed
 			if (connection.get().forAll(c -> Try.run(() -> c.isClosed()).success().getOrElse(true)))
 				this.name = newDatabaseName;
-			// When a connection is open, informs the server
+			// If the new database is on another server, a new connection is opened when needed
+			else if (this.configuration.isEmpty() && 
+					DatabaseSettings.getConfiguration(newDatabaseName) != this.connectedConfiguration)
+			{
+				closeConnection();
+				this.name = newDatabaseName;
+			}
+			// When a connection is open, informs the server. The bundled driver sends a USE 
+			// statement, so the switch costs a round trip. The current database is tracked per 
+			// connection, which makes repeated switches to the same database free.
 			else
 			{
-				executeStatement("USE " + newDatabaseName + ";");
+				getOpenConnection().setCatalog(newDatabaseName);
 				this.name = newDatabaseName;	
 			}
 		}
@@ -346,6 +507,148 @@ public class Database implements AutoCloseable
 		return this.name;
 	}
 	
+	/**
+	 * Starts a new transaction on this connection. The statements executed through this 
+	 * instance are not permanent until {@link #commit()} is called.
+	 * @throws DatabaseUnavailableException If the database can't be accessed
+	 * @throws SQLException If the transaction couldn't be started
+	 */
+	public void startTransaction() throws DatabaseUnavailableException, SQLException
+	{
+		getOpenConnection().setAutoCommit(false);
+	}
+	
+	/**
+	 * Commits the current transaction and returns the connection to auto-commit mode
+	 * @throws DatabaseUnavailableException If the database can't be accessed
+	 * @throws SQLException If the commit failed
+	 * @see #startTransaction()
+	 */
+	public void commit() throws DatabaseUnavailableException, SQLException
+	{
+		Connection connection = getOpenConnection();
+		if (!connection.getAutoCommit())
+		{
+			connection.commit();
+			connection.setAutoCommit(true);
+		}
+	}
+	
+	/**
+	 * Cancels the current transaction and returns the connection to auto-commit mode. Does 
+	 * nothing if there is no open connection.
+	 * @throws SQLException If the rollback failed
+	 * @see #startTransaction()
+	 */
+	public void rollback() throws SQLException
+	{
+		Option<Connection> connection = this.connection.get();
+		if (connection.isDefined() && !connection.get().isClosed() && !connection.get().getAutoCommit())
+		{
+			connection.get().rollback();
+			connection.get().setAutoCommit(true);
+		}
+	}
+	
+	/**
+	 * Performs an operation inside a savepoint. If the operation fails, only the changes made 
+	 * by the operation are rolled back and the rest of the current transaction stays intact.
+	 * @param operation The operation performed inside the savepoint
+	 * @return The operation's result. Failure if the operation failed or if the savepoint 
+	 * couldn't be handled.
+	 * @see #startTransaction()
+	 */
+	public <T> Try<T> withSavepoint(ThrowingFunction<? super Database, T, ?> operation)
+	{
+		Savepoint savepoint;
+		try
+		{
+			savepoint = getOpenConnection().setSavepoint();
+		}
+		catch (SQLException | DatabaseUnavailableException e)
+		{
+			return Try.failure(e);
+		}
+		
+		Try<T> result = operation.apply(this);
+		try
+		{
+			if (result.isSuccess())
+				getOpenConnection().releaseSavepoint(savepoint);
+			else
+				getOpenConnection().rollback(savepoint);
+			
+			return result;
+		}
+		catch (SQLException | DatabaseUnavailableException e)
+		{
+			return Try.failure(e);
+		}
+	}
+	
+	/**
+	 * Performs an operation with a deadline. Every query the current thread performs during 
+	 * the operation is limited to the time remaining until the deadline and fails with a 
+	 * {@link QueryTimeoutException} once the deadline has passed. Nested deadlines can only 
+	 * shorten the current deadline.
+	 * @param timeout The maximum duration of the operation's queries
+	 * @param operation The operation performed
+	 * @return The operation's result. Failure if the operation failed.
+	 */
+	public static <T> Try<T> withDeadline(Duration timeout, ThrowingSupplier<? extends T, ?> operation)
+	{
+		Instant previous = currentDeadline.get();
+		Instant deadline = Instant.now().plus(timeout);
+		if (previous != null && previous.isBefore(deadline))
+			deadline = previous;
+		
+		currentDeadline.set(deadline);
+		try
+		{
+			return Try.success(operation.throwingGet());
+		}
+		catch (Exception e)
+		{
+			return Try.failure(e);
+		}
+		finally
+		{
+			if (previous == null)
+				currentDeadline.remove();
+			else
+				currentDeadline.set(previous);
+		}
+	}
+	
+	/**
+	 * Performs an operation so that all of its reads use the primary server instead of the 
+	 * read replicas. This should be used when the operation needs to read the results of 
+	 * its own (or other recent) writes, since the replicas may lag behind the primary.
+	 * @param operation The operation performed
+	 * @return The operation's result. Failure if the operation failed.
+	 * @see DatabaseConfiguration#addReplica(DatabaseConfiguration)
+	 */
+	public static <T> Try<T> onPrimary(ThrowingSupplier<? extends T, ?> operation)
+	{
+		Boolean previous = primaryReads.get();
+		primaryReads.set(true);
+		try
+		{
+			return Try.success(operation.throwingGet());
+		}
+		catch (Exception e)
+		{
+			return Try.failure(e);
+		}
+		finally
+		{
+			if (previous == null)
+				primaryReads.remove();
+			else
+				primaryReads.set(previous);
+		}
+	}
+	
 	/**
 	 * Closes a currently open statement
 	 * @param statement The statement that will be closed
@@ -355,7 +658,15 @@ public class Database implements AutoCloseable
 		try
 		{
 			if (statement != null)
+			{
+				ScheduledCancel cancel = scheduledCancels.remove(statement);
+				if (cancel != null)
+				{
+					cancel.owner.pendingCancels.remove(statement, cancel);
+					cancel.task.cancel(false);
+				}
 				statement.close();
+			}
 		}
 		catch (SQLException e)
 		{
@@ -426,11 +737,40 @@ public class Database implements AutoCloseable
 	 * @throws DatabaseUnavailableException If the database couldn't be accessed
 	 * @throws DatabaseException If the query failed
 	 */
-	@SuppressWarnings("resource")
 	public static ImmutableList<ImmutableList<ColumnVariable>> select(Selection select, 
 			Table from, ImmutableList<Join> joins, Option<Condition> where, Option<Integer> limit, 
 			Option<Integer> offset, Option<OrderBy> orderBy, Database connection) 
 					throws DatabaseUnavailableException, DatabaseException
+	{
+		return select(select, from, joins, where, limit, offset, orderBy, LockMode.NONE, connection);
+	}
+	
+	/**
+	 * Performs a select query, selecting certain column value(s) from certain row(s) in certain 
+	 * table(s)
+	 * @param select The selected columns
+	 * @param from The table the selection is made on
+	 * @param joins The joins that are inserted to the query (optional)
+	 * @param where The condition that specifies which rows are selected. None if all rows should be selected.
+	 * @param limit The limit on how many rows should be selected at maximum. None if no limit 
+	 * should be set
+	 * @param offset Amount of rows dropped from the result's beginning. None if all rows should 
+	 * be returned. If specified, limit must also be present.
+	 * @param orderBy The method the returned rows are sorted with (optional)
+	 * @param lock The way the selected rows are locked. Locks are held until the end of the 
+	 * connection's current transaction.
+	 * @param connection A database connection that should be used in the query. Null if a 
+	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @return A list containing each selected row. Each row contains the selected column 
+	 * values.
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 * @throws DatabaseException If the query failed
+	 */
+	@SuppressWarnings("resource")
+	public static ImmutableList<ImmutableList<ColumnVariable>> select(Selection select, 
+			Table from, ImmutableList<Join> joins, Option<Condition> where, Option<Integer> limit, 
+			Option<Integer> offset, Option<OrderBy> orderBy, LockMode lock, Database connection) 
+					throws DatabaseUnavailableException, DatabaseException
 	{
 		StringBuilder sql = new StringBuilder();
 		appendSelect(sql, select);
@@ -454,16 +794,18 @@ public class Database implements AutoCloseable
 		if (limit != null)
 			limit.forEach(l -> sql.append(" LIMIT " + l));
 		offset.forEach(o -> sql.append(" OFFSET " + o));
+		if (lock != null)
+			sql.append(lock.toSql());
 		
 		Database db = null;
 		PreparedStatement statement = null;
 		ResultSet results = null;
 		try
 		{
-			db = openIfTemporary(from, connection);
+			db = openReadIfTemporary(from, connection, lock);
 			
 			// Prepares the statement
-			statement = db.getPreparedStatement(sql.toString());
+			statement = db.getPreparedStatement(db.withServerTimeout(sql.toString()));
 			setStatementValues(statement, joins, where.toList());
 			
 			// Executes the query
@@ -534,7 +876,7 @@ public class Database implements AutoCloseable
 		}
 		catch (SQLException | ValueInsertFailedException e)
 		{
-			throw new DatabaseException(e, sql.toString(), from, where, null, select);
+			throw queryFailed(e, sql.toString(), from, where, null, select);
 		}
 		finally
 		{
@@ -587,6 +929,87 @@ public class Database implements AutoCloseable
 		return select(select, from, ImmutableList.empty(), Option.some(where), Option.none(), Option.none(), connection);
 	}
 	
+	/**
+	 * Reads a single page of rows using keyset (seek) pagination. Unlike OFFSET, the cost of 
+	 * reading a page doesn't grow with the page's depth, provided that the ordering is backed 
+	 * by an index.
+	 * @param select The selected columns. The ordered columns are added to the selection if 
+	 * necessary, since they are needed for the continuation key.
+	 * @param from The table the selection is made on
+	 * @param joins The joins that are inserted to the query (optional)
+	 * @param where The condition that specifies which rows are selected. None if all rows should be selected.
+	 * @param orderBy The order in which the rows are read. The ordered columns should form a 
+	 * unique key (for example, end with the primary column) and shouldn't contain null values.
+	 * @param pageSize The maximum amount of rows on a single page
+	 * @param after The continuation key of the previous page. None if the first page should be read.
+	 * @param connection A database connection that should be used in the query. Null if a 
+	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @return The read page, including the key for reading the next page
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 * @throws DatabaseException If the query failed
+	 */
+	public static KeysetPage selectPage(Selection select, Table from, ImmutableList<Join> joins, 
+			Option<Condition> where, OrderBy orderBy, int pageSize, Option<ImmutableList<Value>> after, 
+			Database connection) throws DatabaseUnavailableException, DatabaseException
+	{
+		if (pageSize <= 0)
+			throw new IllegalArgumentException("Page size must be positive");
+		
+		ImmutableList<Column> keyColumns = orderBy.getColumns().map(p -> p.first());
+		Selection actualSelect = select == null || select.selectsAll() ? Selection.ALL : 
+				select.plus(new Selection(keyColumns));
+		
+		// Only rows after the previous page's last key are read
+		Option<Condition> seek = after.map(key -> new SeekCondition(orderBy, key));
+		Option<Condition> actualWhere = CombinedCondition.combineConditions(CombinationOperator.AND, 
+				where.toList().plus(seek.toList()));
+		
+		// Reads one extra row to find out whether there is a next page
+		ImmutableList<ImmutableList<ColumnVariable>> rows = select(actualSelect, from, joins, actualWhere, 
+				Option.some(pageSize + 1), Option.none(), Option.some(orderBy), connection);
+		
+		if (rows.size() <= pageSize)
+			return new KeysetPage(rows, Option.none());
+		else
+		{
+			List<ImmutableList<ColumnVariable>> pageBuffer = new ArrayList<>(pageSize);
+			for (int i = 0; i < pageSize; i++)
+			{
+				pageBuffer.add(rows.get(i));
+			}
+			
+			// The key is read from the last row on the page
+			ImmutableList<ColumnVariable> lastRow = rows.get(pageSize - 1);
+			ImmutableList<Value> key = keyColumns.map(column -> lastRow.find(
+					var -> var.getColumn().equals(column)).map(var -> var.getValue()).getOrElse(Value.EMPTY));
+			
+			return new KeysetPage(ImmutableList.of(pageBuffer), Option.some(key));
+		}
+	}
+	
+	/**
+	 * Reads a single page of rows using keyset (seek) pagination
+	 * @param select The selected columns
+	 * @param from The table the selection is made on
+	 * @param where The condition that specifies which rows are selected. None if all rows should be selected.
+	 * @param orderBy The order in which the rows are read. The ordered columns should form a 
+	 * unique key and shouldn't contain null values.
+	 * @param pageSize The maximum amount of rows on a single page
+	 * @param after The continuation key of the previous page. None if the first page should be read.
+	 * @param connection A database connection that should be used in the query. Null if a 
+	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @return The read page, including the key for reading the next page
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 * @throws DatabaseException If the query failed
+	 * @see #selectPage(Selection, Table, ImmutableList, Option, OrderBy, int, Option, Database)
+	 */
+	public static KeysetPage selectPage(Selection select, Table from, Option<Condition> where, OrderBy orderBy, 
+			int pageSize, Option<ImmutableList<Value>> after, Database connection) 
+			throws DatabaseUnavailableException, DatabaseException
+	{
+		return selectPage(select, from, ImmutableList.empty(), where, orderBy, pageSize, after, connection);
+	}
+	
 	/**
 	 * Selects a single row
 	 * @param select The selected columns
@@ -601,7 +1024,28 @@ public class Database implements AutoCloseable
 	public static Option<ImmutableList<ColumnVariable>> selectSingle(Selection select, Table from, Condition where, 
 			Option<OrderBy> order, Database connection) throws DatabaseException, DatabaseUnavailableException
 	{
-		return select(select, from, new Option<>(where), Option.some(1), order, connection).headOption();
+		return selectSingle(select, from, where, order, LockMode.NONE, connection);
+	}
+	
+	/**
+	 * Selects and locks a single row
+	 * @param select The selected columns
+	 * @param from The table the selection is made on
+	 * @param where The condition that specifies the rows selected
+	 * @param order The order which determines the first row. None if default order (row id).
+	 * @param lock The way the selected row is locked. Locks are held until the end of the 
+	 * connection's current transaction.
+	 * @param connection The database connection used
+	 * @return The first row accepted by the condition. None if no such row exists
+	 * @throws DatabaseException If query failed
+	 * @throws DatabaseUnavailableException If database couldn't be accessed
+	 */
+	public static Option<ImmutableList<ColumnVariable>> selectSingle(Selection select, Table from, Condition where, 
+			Option<OrderBy> order, LockMode lock, Database connection) throws DatabaseException, 
+			DatabaseUnavailableException
+	{
+		return select(select, from, ImmutableList.empty(), new Option<>(where), Option.some(1), Option.none(), 
+				order, lock, connection).headOption();
 	}
 	
 	/**
@@ -713,6 +1157,7 @@ public class Database implements AutoCloseable
 		else
 		{
 			model.addAttributes(result.head(), true);
+			model.markClean();
 			return true;
 		}
 	}
@@ -743,6 +1188,7 @@ public class Database implements AutoCloseable
 		else
 		{
 			model.addAttributes(result.head(), true);
+			model.markClean();
 			return true;
 		}
 	}
@@ -756,23 +1202,43 @@ public class Database implements AutoCloseable
 	 * @return An auto-generated index, if there was one, -1 otherwise.
 	 * @throws DatabaseUnavailableException If the database can't be accessed
 	 * @throws DatabaseException If the operation failed / was misused
+	 * @deprecated The index may overflow with BIGINT keys. Please use 
+	 * {@link #insertAndGetIndex(ValueAssignment, Table, Database)} instead.
 	 */
-	@SuppressWarnings("resource")
+	@Deprecated
 	public static int insert(ValueAssignment insert, Table into, Database connection) throws 
 			DatabaseUnavailableException, DatabaseException
+	{
+		return insertAndGetIndex(insert, into, connection).map(index -> index.toInteger()).getOrElse(-1);
+	}
+	
+	/**
+	 * Inserts new data into a database table. If the table uses an index allocator, the index 
+	 * is allocated before the insert and no generated keys need to be read.
+	 * @param insert The data that is inserted into the table
+	 * @param into The table the data is inserted into
+	 * @param connection A database connection that should be used in the query. Null if a 
+	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @return The allocated or auto-generated index of the new row. None if the index was 
+	 * provided in the insert or if the table doesn't generate indices.
+	 * @throws DatabaseUnavailableException If the database can't be accessed
+	 * @throws DatabaseException If the operation failed / was misused
+	 */
+	@SuppressWarnings("resource")
+	public static Option<Value> insertAndGetIndex(ValueAssignment insert, Table into, Database connection) throws 
+			DatabaseUnavailableException, DatabaseException
 	{
 		// If there are no values to insert or no table, does nothing
 		if (into == null || insert == null)
-			return -1;
-			
-		// Only table values are inserted. Auto-increment keys are removed
-		ValueAssignment actualInsert = insert.filterToTable(into, true);
-		if (actualInsert.isEmpty())
-			return -1;
+			return Option.none();
 		
-		// Makes sure all necessary columns are included (in update mode only primary key is required)
-		if (!actualInsert.containsRequiredColumns(into))
-			throw new DatabaseException(into, actualInsert);
+		Option<Pair<ValueAssignment, Option<Value>>> prepared = prepareInsert(insert, into);
+		if (prepared.isEmpty())
+			return Option.none();
+		
+		ValueAssignment actualInsert = prepared.get().first();
+		Option<Value> allocatedIndex = prepared.get().second();
+		boolean readsGeneratedKeys = into.usesAutoIncrementIndexing() && allocatedIndex.isEmpty();
 		
 		// Parses the sql
 		String sql = actualInsert.toInsertClause(into);
@@ -783,7 +1249,7 @@ public class Database implements AutoCloseable
 		try
 		{
 			db = openIfTemporary(into, connection);
-			statement = db.getPreparedStatement(sql, into.usesAutoIncrementIndexing());
+			statement = db.getPreparedStatement(sql, readsGeneratedKeys);
 			
 			// Inserts the values executes statement
 			setStatementValues(statement, actualInsert);
@@ -792,18 +1258,18 @@ public class Database implements AutoCloseable
 			boolean resultsFound = statement.execute();
 			
 			// Finds the generated indices, if necessary
-			if (into.usesAutoIncrementIndexing())
+			if (readsGeneratedKeys)
 			{
 				results = statement.getGeneratedKeys();
 				if (results.next())
-					return results.getInt(1);
+					return Option.some(Value.Long(results.getLong(1)).castTo(into.getPrimaryColumn().getType()));
 			}
 			else if (resultsFound)
 				results = statement.getResultSet();
 		}
 		catch (SQLException | ValueInsertFailedException e)
 		{
-			throw new DatabaseException(e, sql.toString(), into, null, actualInsert, null);
+			throw queryFailed(e, sql.toString(), into, null, actualInsert, null);
 		}
 		finally
 		{
@@ -812,12 +1278,74 @@ public class Database implements AutoCloseable
 			closeIfTemporary(db, connection);
 		}
 		
-		return -1;
+		return allocatedIndex;
+	}
+	
+	/**
+	 * Inserts multiple rows into a database table. Rows with similar columns are sent as 
+	 * a single JDBC batch. When the table uses auto-increment indexing without an index 
+	 * allocator, the rows are inserted one by one so that the generated keys can be read.
+	 * @param inserts The data inserted into the table, one assignment per row
+	 * @param into The table the data is inserted into
+	 * @param connection A database connection that should be used in the query. Null if a 
+	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @return The allocated or generated index for each of the provided rows. An empty value 
+	 * for rows that didn't receive an index.
+	 * @throws DatabaseUnavailableException If the database can't be accessed
+	 * @throws DatabaseException If the operation failed / was misused
+	 */
+	@SuppressWarnings("resource")
+	public static ImmutableList<Value> insertBatch(ImmutableList<ValueAssignment> inserts, Table into, 
+			Database connection) throws DatabaseUnavailableException, DatabaseException
+	{
+		if (into == null || inserts.isEmpty())
+			return ImmutableList.empty();
+		
+		Database db = null;
+		try
+		{
+			db = openIfTemporary(into, connection);
+			
+			// Generated keys have to be read separately for each row
+			if (into.usesAutoIncrementIndexing() && into.getIndexAllocator().isEmpty())
+			{
+				List<Value> indexBuffer = new ArrayList<>(inserts.size());
+				for (ValueAssignment insert : inserts)
+				{
+					indexBuffer.add(insertAndGetIndex(insert, into, db).getOrElse(Value.EMPTY));
+				}
+				return ImmutableList.of(indexBuffer);
+			}
+			
+			// Prepares the rows and groups them by statement
+			List<Value> indexBuffer = new ArrayList<>(inserts.size());
+			Map<String, List<ImmutableList<ValueAssignment>>> statementRows = new LinkedHashMap<>();
+			for (ValueAssignment insert : inserts)
+			{
+				Option<Pair<ValueAssignment, Option<Value>>> prepared = prepareInsert(insert, into);
+				indexBuffer.add(prepared.flatMap(p -> p.second()).getOrElse(Value.EMPTY));
+				
+				prepared.forEach(p -> statementRows.computeIfAbsent(p.first().toInsertClause(into), 
+						sql -> new ArrayList<>()).add(ImmutableList.withValue(p.first())));
+			}
+			
+			// Executes each statement as a single batch
+			for (String sql : statementRows.keySet())
+			{
+				executeBatch(db, sql, into, statementRows.get(sql));
+			}
+			
+			return ImmutableList.of(indexBuffer);
+		}
+		finally
+		{
+			closeIfTemporary(db, connection);
+		}
 	}
 	
 	/**
 	 * Inserts a model into the database. The model should either have an existing index 
-	 * attribute, or use a table with auto-increment indexing
+	 * attribute, or use a table with auto-increment indexing or an index allocator
 	 * @param model A model
 	 * @param connection A database connection that should be used in the query. Null if a 
 	 * temporary connection should be used. Only temporary connections are closed in this method.
@@ -829,11 +1357,47 @@ public class Database implements AutoCloseable
 	{
 		if (model != null)
 		{
-			int index = insert(new ValueAssignment(true, model.getAttributes()), 
-					model.getTable(), connection);
+			initialiseVersion(model);
+			insertAndGetIndex(new ValueAssignment(true, model.getAttributes()), model.getTable(), 
+					connection).forEach(model::setIndex);
+			model.markClean();
+		}
+	}
+	
+	/**
+	 * Inserts multiple models into the database. Models that use a table with an index 
+	 * allocator (or that already have an index) are inserted in JDBC batches.
+	 * @param models The models that are inserted
+	 * @param connection A database connection that should be used in the query. Null if a 
+	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @throws DatabaseException If the operation failed
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 */
+	public static void insertBatch(ImmutableList<? extends TableModel> models, Database connection) 
+			throws DatabaseException, DatabaseUnavailableException
+	{
+		// Models are grouped by table
+		Map<Table, List<TableModel>> tableModels = new LinkedHashMap<>();
+		for (TableModel model : models)
+		{
+			initialiseVersion(model);
+			tableModels.computeIfAbsent(model.getTable(), t -> new ArrayList<>()).add(model);
+		}
+		
+		for (Table table : tableModels.keySet())
+		{
+			ImmutableList<TableModel> group = ImmutableList.of(tableModels.get(table));
+			ImmutableList<Value> indices = insertBatch(group.map(
+					model -> new ValueAssignment(true, model.getAttributes())), table, connection);
 			
-			if (index >= 0)
-				model.setIndex(Value.Integer(index));
+			// Assigns the new indices to the models
+			for (int i = 0; i < group.size(); i++)
+			{
+				Value index = indices.get(i);
+				if (!index.isNull())
+					group.get(i).setIndex(index);
+				group.get(i).markClean();
+			}
 		}
 	}
 	
@@ -876,11 +1440,12 @@ public class Database implements AutoCloseable
 	 * @param deleteFromJoined Should the joined rows be deleted as well
 	 * @param connection A database connection that should be used in the query. Null if a 
 	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @return The number of rows deleted
 	 * @throws DatabaseUnavailableException If the database couldn't be accessed
 	 * @throws DatabaseException If the query failed / was misused
 	 */
 	@SuppressWarnings("resource")
-	public static void delete(Table from, ImmutableList<Join> joins, Option<Condition> where, 
+	public static int delete(Table from, ImmutableList<Join> joins, Option<Condition> where, 
 			boolean deleteFromJoined, Database connection) throws DatabaseUnavailableException, 
 			DatabaseException
 	{
@@ -924,11 +1489,11 @@ public class Database implements AutoCloseable
 			setStatementValues(statement, joins, where.toList());
 			
 			// Executes
-			statement.executeUpdate();
+			return statement.executeUpdate();
 		}
 		catch (SQLException | ValueInsertFailedException e)
 		{
-			throw new DatabaseException(e, sql.toString(), from, where, null, null);
+			throw queryFailed(e, sql.toString(), from, where, null, null);
 		}
 		finally
 		{
@@ -943,13 +1508,14 @@ public class Database implements AutoCloseable
 	 * @param where The condition which determines, which rows are deleted. None if all rows should be deleted
 	 * @param connection A database connection that should be used in the query. Null if a 
 	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @return The number of rows deleted
 	 * @throws DatabaseUnavailableException If the database couldn't be accessed
 	 * @throws DatabaseException If the query failed / was misused
 	 */
-	public static void delete(Table from, Option<Condition> where, Database connection) 
+	public static int delete(Table from, Option<Condition> where, Database connection) 
 			throws DatabaseUnavailableException, DatabaseException
 	{
-		delete(from, ImmutableList.empty(), where, false, connection);
+		return delete(from, ImmutableList.empty(), where, false, connection);
 	}
 	
 	/**
@@ -959,13 +1525,14 @@ public class Database implements AutoCloseable
 	 * @param where The condition which determines which rows are updated. None if all rows should be updated.
 	 * @param connection A database connection that should be used in the query. Null if a 
 	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @return The number of rows updated
 	 * @throws DatabaseException If the operation failed
 	 * @throws DatabaseUnavailableException If the database couldn't be accessed
 	 */
-	public static void update(Table table, ValueAssignment set, Option<Condition> where, 
+	public static int update(Table table, ValueAssignment set, Option<Condition> where, 
 			Database connection) throws DatabaseException, DatabaseUnavailableException
 	{
-		update(table, ImmutableList.empty(), set, where, connection);
+		return update(table, ImmutableList.empty(), set, where, connection);
 	}
 	
 	/**
@@ -977,11 +1544,12 @@ public class Database implements AutoCloseable
 	 * @param where The condition which determines which rows are updated. None if all rows should be updated
 	 * @param connection A database connection that should be used in the query. Null if a 
 	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @return The number of rows updated
 	 * @throws DatabaseException If the operation failed
 	 * @throws DatabaseUnavailableException If the database couldn't be accessed
 	 */
 	@SuppressWarnings("resource")
-	public static void update(Table table, ImmutableList<Join> joins, ValueAssignment set, 
+	public static int update(Table table, ImmutableList<Join> joins, ValueAssignment set, 
 			Option<Condition> where, Database connection) throws DatabaseException, DatabaseUnavailableException
 	{
 		// Only updates attributes that belong to the target table(s) and are not primary 
@@ -989,7 +1557,7 @@ public class Database implements AutoCloseable
 		ValueAssignment actualSet = set.filterToTables(table, joins, true);
 		
 		if (actualSet.isEmpty())
-			return;
+			return 0;
 		
 		// Parses the sql
 		StringBuilder sql = new StringBuilder("UPDATE ");
@@ -1023,11 +1591,11 @@ public class Database implements AutoCloseable
 			setStatementValues(statement, ImmutableList.flatten(joins, ImmutableList.withValue(actualSet), where.toList()));
 			
 			// Executes the update
-			statement.executeUpdate();
+			return statement.executeUpdate();
 		}
 		catch (SQLException | ValueInsertFailedException e)
 		{
-			throw new DatabaseException(e, sql.toString(), table, where, actualSet, null);
+			throw queryFailed(e, sql.toString(), table, where, actualSet, null);
 		}
 		finally
 		{
@@ -1037,22 +1605,69 @@ public class Database implements AutoCloseable
 	}
 	
 	/**
-	 * Updates a models data into the database
+	 * Updates a models data into the database. Only the attributes that have been modified 
+	 * since the model was last read or written are updated. If there are no such attributes, 
+	 * no query is performed. If the model's table has a version column and 
+	 * the model has a version, only rows with that version are updated. The version is 
+	 * incremented in the database and in the model.
 	 * @param model The model who's attributes are written into the database
 	 * @param joins The joins used in this query
 	 * @param where The condition with which the updated rows are selected. None if all rows should be updated
 	 * @param skipNullUpdates Should null value attributes be skipped
 	 * @param connection A database connection that should be used in the query. Null if a 
 	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @return The number of rows updated
+	 * @throws VersionConflictException If the model has a version but no row with that 
+	 * version was found
 	 * @throws DatabaseException If the process failed
 	 * @throws DatabaseUnavailableException If the database couldn't be accessed
 	 */
-	public static void update(TableModel model, ImmutableList<Join> joins, Option<Condition> where, 
+	public static int update(TableModel model, ImmutableList<Join> joins, Option<Condition> where, 
 			boolean skipNullUpdates, Database connection) throws 
 			DatabaseException, DatabaseUnavailableException
 	{
-		update(model.getTable(), joins, new ValueAssignment(skipNullUpdates, model.getAttributes()), 
-				where, connection);
+		// Skipped null values remain modified
+		ImmutableList<ColumnVariable> dirty = model.getDirtyAttributes().filter(var -> !skipNullUpdates || !var.isNull());
+		Option<Column> versionColumn = model.getTable().getVersionColumn();
+		if (versionColumn.isEmpty())
+		{
+			int updated = update(model.getTable(), joins, new ValueAssignment(false, dirty), 
+					where, connection);
+			// The changes remain pending if no row was updated
+			if (updated > 0)
+				model.markClean(dirty);
+			return updated;
+		}
+		
+		// The version is never assigned directly, it is incremented instead
+		Column column = versionColumn.get();
+		ValueAssignment set = new ValueAssignment(false, dirty.filter(
+				var -> !var.getColumn().equals(column)));
+		if (set.filterToTables(model.getTable(), joins, true).isEmpty())
+			return 0;
+		set.appendIncrement(column, Value.Integer(1));
+		
+		Option<Value> version = model.getAttributes().find(var -> var.getColumn().equals(column)).map(
+				var -> var.getValue()).filter(v -> !v.isNull());
+		if (version.isEmpty())
+		{
+			int updated = update(model.getTable(), joins, set, where, connection);
+			if (updated > 0)
+				model.markClean(dirty);
+			return updated;
+		}
+		
+		// Only the row with the expected version is updated
+		Option<Condition> versionedWhere = CombinedCondition.combineConditions(CombinationOperator.AND, 
+				where.toList().plus(new ComparisonCondition(column, version.get())));
+		int updated = update(model.getTable(), joins, set, versionedWhere, connection);
+		
+		if (updated == 0)
+			throw new VersionConflictException(model.getTable(), versionedWhere, set, version.get());
+		
+		model.getAttribute(column).setValue(Value.Long(version.get().toLong() + 1).castTo(column.getType()));
+		model.markClean(dirty.plus(model.getAttribute(column)));
+		return updated;
 	}
 	
 	/**
@@ -1062,13 +1677,14 @@ public class Database implements AutoCloseable
 	 * @param skipNullUpdates Should null value attributes be skipped
 	 * @param connection A database connection that should be used in the query. Null if a 
 	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @return The number of rows updated
 	 * @throws DatabaseException If the process failed
 	 * @throws DatabaseUnavailableException If the database couldn't be accessed
 	 */
-	public static void update(TableModel model, Option<Condition> where, boolean skipNullUpdates, 
+	public static int update(TableModel model, Option<Condition> where, boolean skipNullUpdates, 
 			Database connection) throws DatabaseException, DatabaseUnavailableException
 	{
-		update(model, ImmutableList.empty(), where, skipNullUpdates, connection);
+		return update(model, ImmutableList.empty(), where, skipNullUpdates, connection);
 	}
 	
 	/**
@@ -1078,15 +1694,16 @@ public class Database implements AutoCloseable
 	 * @param skipNullUpdates Should null value attributes be skipped
 	 * @param connection A database connection that should be used in the query. Null if a 
 	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @return The number of rows updated
 	 * @throws DatabaseException If the process failed
 	 * @throws NoSuchColumnException If the model's table doesn't have a primary key
 	 * @throws DatabaseUnavailableException If the database couldn't be accessed
 	 */
-	public static void update(TableModel model, Value index, boolean skipNullUpdates, 
+	public static int update(TableModel model, Value index, boolean skipNullUpdates, 
 			Database connection) throws DatabaseException, NoSuchColumnException, 
 			DatabaseUnavailableException
 	{
-		update(model, Option.some(new ComparisonCondition(model.getTable().getPrimaryColumn(), index)), 
+		return update(model, Option.some(new ComparisonCondition(model.getTable().getPrimaryColumn(), index)), 
 				skipNullUpdates, connection);
 	}
 	
@@ -1097,14 +1714,202 @@ public class Database implements AutoCloseable
 	 * @param skipNullUpdates Should null value attributes be skipped
 	 * @param connection A database connection that should be used in the query. Null if a 
 	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @return The number of rows updated
 	 * @throws DatabaseException If the process failed
 	 * @throws NoSuchColumnException If the model's table doesn't have a primary key
 	 * @throws DatabaseUnavailableException If the database couldn't be accessed
 	 */
-	public static void update(TableModel model, boolean skipNullUpdates, Database connection) 
+	public static int update(TableModel model, boolean skipNullUpdates, Database connection) 
 			throws DatabaseException, DatabaseUnavailableException, NoSuchColumnException
 	{
-		update(model, Option.some(ComparisonCondition.createIndexEqualsCondition(model)), skipNullUpdates, connection);
+		return update(model, Option.some(ComparisonCondition.createIndexEqualsCondition(model)), skipNullUpdates, connection);
+	}
+	
+	/**
+	 * Updates multiple models into the database. Each row is selected with the model's index 
+	 * and only the modified attributes are written. Updates that modify the same columns are 
+	 * sent as JDBC batches. Models of tables that have a version column are updated one by 
+	 * one so that version conflicts can be detected.
+	 * @param models The models that are updated
+	 * @param connection A database connection that should be used in the query. Null if a 
+	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @throws DatabaseException If the operation failed
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 * @throws NoSuchColumnException If a model's table doesn't have a primary key
+	 */
+	public static void updateBatch(ImmutableList<? extends TableModel> models, Database connection) 
+			throws DatabaseException, DatabaseUnavailableException, NoSuchColumnException
+	{
+		// Models are grouped by table
+		Map<Table, List<TableModel>> tableModels = new LinkedHashMap<>();
+		for (TableModel model : models)
+		{
+			tableModels.computeIfAbsent(model.getTable(), t -> new ArrayList<>()).add(model);
+		}
+		
+		for (Table table : tableModels.keySet())
+		{
+			Database db = null;
+			try
+			{
+				db = openIfTemporary(table, connection);
+				
+				// Groups the updates by statement
+				Map<String, List<ImmutableList<PreparedSQLClause>>> statementRows = new LinkedHashMap<>();
+				List<Pair<TableModel, ImmutableList<ColumnVariable>>> written = new ArrayList<>();
+				for (TableModel model : tableModels.get(table))
+				{
+					if (table.getVersionColumn().isDefined())
+					{
+						update(model, false, db);
+						continue;
+					}
+					
+					ImmutableList<ColumnVariable> dirty = model.getDirtyAttributes();
+					ValueAssignment set = new ValueAssignment(false, dirty).filterToTables(table, 
+							ImmutableList.empty(), true);
+					if (set.isEmpty())
+						continue;
+					
+					Condition where = ComparisonCondition.createIndexEqualsCondition(model);
+					try
+					{
+						String sql = "UPDATE " + table.getName() + set.toSetClause() + where.toWhereClause();
+						statementRows.computeIfAbsent(sql, s -> new ArrayList<>()).add(
+								ImmutableList.withValues(set, where));
+						written.add(new Pair<>(model, dirty));
+					}
+					catch (StatementParseException e)
+					{
+						throw new DatabaseException(e, where);
+					}
+				}
+				
+				for (String sql : statementRows.keySet())
+				{
+					executeBatch(db, sql, table, statementRows.get(sql));
+				}
+				written.forEach(p -> p.first().markClean(p.second()));
+			}
+			finally
+			{
+				closeIfTemporary(db, connection);
+			}
+		}
+	}
+	
+	// Performs the updates of a single table as JDBC batches. The updates that use the same 
+	// statement are sent in the same batch. Returns the number of updated rows for each 
+	// update, in the same order. The driver may report Statement.SUCCESS_NO_INFO instead.
+	static int[] updateBatch(Table table, List<Pair<ValueAssignment, Condition>> updates, 
+			Database connection) throws DatabaseException, DatabaseUnavailableException
+	{
+		int[] counts = new int[updates.size()];
+		
+		// Statement -> indices of the updates that use it
+		Map<String, List<Integer>> statementIndices = new LinkedHashMap<>();
+		for (int i = 0; i < updates.size(); i++)
+		{
+			Pair<ValueAssignment, Condition> update = updates.get(i);
+			try
+			{
+				String sql = "UPDATE " + table.getName() + update.first().toSetClause() + 
+						update.second().toWhereClause();
+				statementIndices.computeIfAbsent(sql, s -> new ArrayList<>()).add(i);
+			}
+			catch (StatementParseException e)
+			{
+				throw new DatabaseException(e, update.second());
+			}
+		}
+		
+		Database db = null;
+		try
+		{
+			db = openIfTemporary(table, connection);
+			for (String sql : statementIndices.keySet())
+			{
+				List<Integer> indices = statementIndices.get(sql);
+				List<ImmutableList<PreparedSQLClause>> rows = new ArrayList<>(indices.size());
+				for (int index : indices)
+				{
+					Pair<ValueAssignment, Condition> update = updates.get(index);
+					rows.add(ImmutableList.withValues(update.first(), update.second()));
+				}
+				
+				int[] results = executeBatch(db, sql, table, rows);
+				for (int i = 0; i < results.length && i < indices.size(); i++)
+				{
+					counts[indices.get(i)] = results[i];
+				}
+			}
+		}
+		finally
+		{
+			closeIfTemporary(db, connection);
+		}
+		
+		return counts;
+	}
+	
+	/**
+	 * Updates a model's data into the database, but only if the row still contains the 
+	 * expected values. The check and the update are performed in a single statement, which 
+	 * makes this method suitable for optimistic concurrency without locking. Please note that 
+	 * the row counts as updated only if the driver reports matched rows (the MySQL driver 
+	 * default) or if the update changes at least one value.
+	 * @param model The model who's attributes are written into the database. All of the 
+	 * model's attributes are written, whether they have been modified or not. The updated 
+	 * row is selected with the model's index. The model is marked clean only if the row 
+	 * was updated.
+	 * @param expectedValues The values the row must currently have in order to be updated. 
+	 * Null values are compared null-safely.
+	 * @param connection A database connection that should be used in the query. Null if a 
+	 * temporary connection should be used. Only temporary connections are closed in this method.
+	 * @return Whether the row was updated. False if the row didn't exist or didn't have the 
+	 * expected values.
+	 * @throws DatabaseException If the process failed
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 * @throws NoSuchColumnException If the model's table doesn't have a primary key
+	 */
+	public static boolean compareAndSet(TableModel model, ImmutableList<? extends ColumnVariable> expectedValues, 
+			Database connection) throws DatabaseException, DatabaseUnavailableException, NoSuchColumnException
+	{
+		Table table = model.getTable();
+		Option<Column> versionColumn = table.getVersionColumn();
+		
+		// Writes the model's values instead of only the modified ones, so that a failed 
+		// attempt can be retried with the same model. The version is incremented instead.
+		ImmutableList<ColumnVariable> values = model.getAttributes().filter(var -> !var.getColumn().isPrimary() && 
+				!versionColumn.exists(c -> c.equals(var.getColumn())));
+		ValueAssignment set = new ValueAssignment(false, values);
+		
+		ImmutableList<Condition> conditions = ImmutableList.<Condition>withValue(
+				ComparisonCondition.createIndexEqualsCondition(model)).plus(
+				ComparisonCondition.createVariableSetEqualsCondition(expectedValues, false).toList());
+		Option<Value> version = versionColumn.flatMap(c -> model.getAttributes().find(
+				var -> var.getColumn().equals(c)).map(var -> var.getValue())).filter(v -> !v.isNull());
+		if (versionColumn.isDefined())
+		{
+			Column column = versionColumn.get();
+			set.appendIncrement(column, Value.Integer(1));
+			if (version.isDefined())
+				conditions = conditions.plus(new ComparisonCondition(column, version.get()));
+		}
+		
+		int updated = update(table, ImmutableList.empty(), set, CombinedCondition.combineConditions(
+				CombinationOperator.AND, conditions), connection);
+		if (updated == 0)
+			return false;
+		
+		model.markClean(values);
+		if (version.isDefined())
+		{
+			Column column = versionColumn.get();
+			model.getAttribute(column).setValue(Value.Long(version.get().toLong() + 1).castTo(column.getType()));
+			model.markClean(ImmutableList.withValue(model.getAttribute(column)));
+		}
+		return true;
 	}
 	
 	/**
@@ -1165,6 +1970,157 @@ public class Database implements AutoCloseable
 		return indexExists(model.getTable(), model.getIndex(), connection);
 	}
 	
+	// Versioned rows start from version 0 unless the model specifies otherwise
+	private static void initialiseVersion(TableModel model)
+	{
+		model.getTable().getVersionColumn().forEach(column -> 
+		{
+			ColumnVariable version = model.getAttribute(column);
+			if (version.getValue().isNull())
+				version.setValue(Value.Integer(0).castTo(column.getType()));
+		});
+	}
+	
+	// Filters the insert to the table columns and allocates an index, if necessary
+	// Returns the insert and the allocated index. None if there was nothing to insert
+	private static Option<Pair<ValueAssignment, Option<Value>>> prepareInsert(ValueAssignment insert, 
+			Table into) throws DatabaseException
+	{
+		Option<IndexAllocator> allocator = into.getIndexAllocator();
+		
+		// Only table values are inserted. Auto-increment keys are removed unless the keys are allocated
+		ValueAssignment actualInsert = insert.filterToTable(into, allocator.isEmpty());
+		if (actualInsert.isEmpty())
+			return Option.none();
+		
+		Option<Value> allocatedIndex = Option.none();
+		if (allocator.isDefined())
+		{
+			Column primary = into.getPrimaryColumn();
+			if (!actualInsert.containsColumn(primary, true))
+			{
+				try
+				{
+					Value index = allocator.get().allocateIndex(into);
+					actualInsert.append(primary, index);
+					allocatedIndex = Option.some(index);
+				}
+				catch (IndexAllocationException e)
+				{
+					throw new DatabaseException(e);
+				}
+			}
+		}
+		
+		// Makes sure all necessary columns are included (in update mode only primary key is required)
+		if (!actualInsert.containsRequiredColumns(into))
+			throw new DatabaseException(into, actualInsert);
+		
+		return Option.some(new Pair<>(actualInsert, allocatedIndex));
+	}
+	
+	private static int[] executeBatch(Database db, String sql, Table table, 
+			List<? extends ImmutableList<? extends PreparedSQLClause>> rows) throws DatabaseUnavailableException, 
+			DatabaseException
+	{
+		PreparedStatement statement = null;
+		try
+		{
+			statement = db.getPreparedStatement(sql);
+			for (ImmutableList<? extends PreparedSQLClause> row : rows)
+			{
+				setStatementValues(statement, row);
+				statement.addBatch();
+			}
+			
+			return statement.executeBatch();
+		}
+		catch (SQLException | ValueInsertFailedException e)
+		{
+			throw queryFailed(e, sql, table, null, null, null);
+		}
+		finally
+		{
+			closeStatement(statement);
+		}
+	}
+	
+	// Used for connections whose leases are tracked elsewhere
+	void disableLeakTracking()
+	{
+		this.leakTracked = false;
+	}
+	
+	// Finds the timeout of the next statement, based on the connection's timeout and the current deadline
+	private Option<Duration> getStatementTimeout()
+	{
+		Option<Duration> timeout = this.queryTimeout.isDefined() ? this.queryTimeout : 
+				getConfiguration().getDefaultQueryTimeout();
+		Instant deadline = currentDeadline.get();
+		if (deadline == null)
+			return timeout;
+		
+		Duration remaining = Duration.between(Instant.now(), deadline);
+		if (timeout.exists(t -> t.compareTo(remaining) < 0))
+			return timeout;
+		else
+			return Option.some(remaining);
+	}
+	
+	private void applyTimeout(Statement statement) throws SQLException
+	{
+		Option<Duration> timeout = getStatementTimeout();
+		if (timeout.isEmpty())
+			return;
+		
+		Duration remaining = timeout.get();
+		if (remaining.isZero() || remaining.isNegative())
+			throw new SQLTimeoutException("The query deadline has already passed");
+		
+		// JDBC timeouts are in whole seconds, so the exact timeout is enforced by cancelling 
+		// the statement asynchronously
+		statement.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, (remaining.toMillis() + 999) / 1000));
+		ScheduledCancel cancel = new ScheduledCancel(this, SharedScheduler.schedule(() -> 
+		{
+			ScheduledCancel pending = scheduledCancels.remove(statement);
+			if (pending != null)
+			{
+				pendingCancels.remove(statement, pending);
+				cancelExecutor.execute(() -> 
+				{
+					try
+					{
+						statement.cancel();
+					}
+					catch (SQLException e)
+					{
+						// The statement may have completed already
+					}
+				});
+			}
+		}, remaining));
+		scheduledCancels.put(statement, cancel);
+		pendingCancels.put(statement, cancel);
+	}
+	
+	private String withServerTimeout(String selectSql)
+	{
+		if (!getConfiguration().usesServerStatementTimeouts())
+			return selectSql;
+		
+		return getStatementTimeout().filter(t -> !t.isNegative() && !t.isZero()).map(t -> 
+				"SET STATEMENT max_statement_time=" + (t.toMillis() / 1000.0) + " FOR " + selectSql).getOrElse(selectSql);
+	}
+	
+	private static DatabaseException queryFailed(Exception cause, String sql, Table table, Option<Condition> where, 
+			ValueAssignment set, Selection select)
+	{
+		if (QueryTimeoutException.isTimeout(cause))
+			return new QueryTimeoutException(cause, sql, table, where, set, select);
+		else
+			return new DatabaseException(cause, sql, table, where, set, select);
+	}
+	
 	// 
 	private static Database openIfTemporary(Table targetTable, Database providedConnection) throws 
 			DatabaseUnavailableException
@@ -1186,6 +2142,21 @@ public class Database implements AutoCloseable
 		}
 	}
 	
+	// Temporary read connections use a replica when possible
+	private static Database openReadIfTemporary(Table targetTable, Database providedConnection, LockMode lock) 
+			throws DatabaseUnavailableException
+	{
+		if (providedConnection == null && (lock == null || lock == LockMode.NONE) && primaryReads.get() == null)
+		{
+			Option<DatabaseConfiguration> replica = DatabaseSettings.getConfiguration(
+					targetTable.getDatabaseName()).nextReplica();
+			if (replica.isDefined())
+				return new Database(targetTable.getDatabaseName(), replica.get());
+		}
+		
+		return openIfTemporary(targetTable, providedConnection);
+	}
+	
 	private static void closeIfTemporary(Database usedConnection, Database providedConnection)
 	{
 		// The connection is only closed if it was temporary (= not provided)
@@ -1329,6 +2300,18 @@ public class Database implements AutoCloseable
 	
 	// NESTED CLASSES	---------------
 
+	private static class ScheduledCancel
+	{
+		private final Database owner;
+		private final ScheduledFuture<?> task;
+		
+		public ScheduledCancel(Database owner, ScheduledFuture<?> task)
+		{
+			this.owner = owner;
+			this.task = task;
+		}
+	}
+
 	private static class ValueInsertFailedException extends Exception
 	{
 		private static final long serialVersionUID = -5237257223474389560L;
@@ -0,0 +1,297 @@
+package utopia.vault.database;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import utopia.flow.structure.ImmutableList;
+import utopia.flow.structure.Option;
+
+/**
+ * A database configuration describes how connections to a single database server (or 
+ * cluster) are opened and used. Databases are bound to configurations by name in 
+ * {@link DatabaseSettings#bind(String, DatabaseConfiguration)}, which allows different tables 
+ * to use different servers. Databases that haven't been bound use the default configuration.<br>
+ * A configuration may have read replicas. Reads made with temporary connections are then 
+ * distributed between the replicas, while writes and reads using provided connections 
+ * (including transactions) use this configuration's server.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ * @see DatabaseSettings#getDefaultConfiguration()
+ */
+public class DatabaseConfiguration
+{
+	// ATTRIBUTES	------------------
+	
+	private String connectionTarget;
+	private String user;
+	private Option<String> password;
+	private Option<String> driver;
+	private final Properties driverProperties = new Properties();
+	
+	private volatile Option<Duration> defaultQueryTimeout = Option.none();
+	private volatile boolean serverStatementTimeouts = false;
+	private volatile Option<CircuitBreaker> circuitBreaker = Option.some(new CircuitBreaker(5, Duration.ofSeconds(5)));
+	
+	private final List<DatabaseConfiguration> replicas = new CopyOnWriteArrayList<>();
+	private final AtomicInteger replicaCounter = new AtomicInteger();
+	
+	// Resolved from the other settings when first needed, unless specified
+	private ConnectionFactory connectionFactory = null;
+	private boolean customConnectionFactory = false;
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new configuration
+	 * @param connectionTarget The server address. Should not include the name of the 
+	 * database. For example: "jdbc:mysql://localhost:3306/"
+	 * @param user The user used when connecting to the server
+	 * @param password The password used when connecting to the server
+	 * @param driver The name of the driver class used when connecting to the server. None if 
+	 * the driver should be looked up from the registered drivers.
+	 */
+	public DatabaseConfiguration(String connectionTarget, String user, Option<String> password, 
+			Option<String> driver)
+	{
+		this.connectionTarget = connectionTarget;
+		this.user = user;
+		this.password = password;
+		this.driver = driver;
+	}
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * @return The server address (doesn't include database name)
+	 */
+	public synchronized String getConnectionTarget()
+	{
+		return this.connectionTarget;
+	}
+	
+	/**
+	 * Changes the server address
+	 * @param connectionTarget The new server address. Should not include the name of the 
+	 * database. For example: "jdbc:mysql://localhost:3306/"
+	 */
+	public synchronized void setConnectionTarget(String connectionTarget)
+	{
+		this.connectionTarget = connectionTarget;
+		resetConnectionFactory();
+	}
+	
+	/**
+	 * @return The user used for accessing the server
+	 */
+	public synchronized String getUser()
+	{
+		return this.user;
+	}
+	
+	/**
+	 * Changes the user used for accessing the server
+	 * @param user The new user
+	 */
+	public synchronized void setUser(String user)
+	{
+		this.user = user;
+		resetConnectionFactory();
+	}
+	
+	/**
+	 * @return The password used for accessing the server
+	 */
+	public synchronized Option<String> getPassword()
+	{
+		return this.password;
+	}
+	
+	/**
+	 * Changes the password used for accessing the server
+	 * @param password The new password
+	 */
+	public synchronized void setPassword(String password)
+	{
+		this.password = Option.some(password);
+		resetConnectionFactory();
+	}
+	
+	/**
+	 * @return The name of the driver class used for accessing the server. None if the driver 
+	 * is looked up from the registered drivers.
+	 */
+	public synchronized Option<String> getDriver()
+	{
+		return this.driver;
+	}
+	
+	/**
+	 * Changes the driver used for accessing the server
+	 * @param driver The name of the new driver class
+	 */
+	public synchronized void setDriver(String driver)
+	{
+		this.driver = Option.some(driver);
+		resetConnectionFactory();
+	}
+	
+	/**
+	 * Specifies a driver specific connection property (for example "useSSL" or "connectTimeout")
+	 * @param key The name of the property
+	 * @param value The value of the property
+	 */
+	public synchronized void setDriverProperty(String key, String value)
+	{
+		this.driverProperties.setProperty(key, value);
+		resetConnectionFactory();
+	}
+	
+	/**
+	 * @return The timeout used in queries that don't specify a timeout of their own. None if 
+	 * queries don't time out by default.
+	 */
+	public Option<Duration> getDefaultQueryTimeout()
+	{
+		return this.defaultQueryTimeout;
+	}
+	
+	/**
+	 * Changes the timeout used in queries that don't specify a timeout of their own
+	 * @param timeout The new default timeout. None if queries shouldn't time out by default.
+	 * @see Database#setQueryTimeout(Duration)
+	 */
+	public void setDefaultQueryTimeout(Option<Duration> timeout)
+	{
+		this.defaultQueryTimeout = timeout;
+	}
+	
+	/**
+	 * @return Whether the query timeouts are also sent to the server with the select statements
+	 */
+	public boolean usesServerStatementTimeouts()
+	{
+		return this.serverStatementTimeouts;
+	}
+	
+	/**
+	 * Changes whether the query timeouts are also sent to the server with the select 
+	 * statements ('SET STATEMENT max_statement_time=... FOR SELECT ...'). This makes the server 
+	 * stop the query even if the client fails to cancel it. Requires MariaDB 10.1 or later.
+	 * @param enabled Whether server side statement timeouts should be used
+	 */
+	public void setServerStatementTimeouts(boolean enabled)
+	{
+		this.serverStatementTimeouts = enabled;
+	}
+	
+	/**
+	 * @return The circuit breaker used when opening new connections. None if circuit breaking 
+	 * is disabled. The breaker's state may be used for monitoring the server availability.
+	 */
+	public Option<CircuitBreaker> getCircuitBreaker()
+	{
+		return this.circuitBreaker;
+	}
+	
+	/**
+	 * Changes the circuit breaker used when opening new connections. By default, connection 
+	 * attempts are blocked for 5 seconds after 5 consecutive failures.
+	 * @param breaker The new circuit breaker. None if circuit breaking should be disabled.
+	 */
+	public void setCircuitBreaker(Option<CircuitBreaker> breaker)
+	{
+		this.circuitBreaker = breaker;
+	}
+	
+	/**
+	 * @return The factory used for opening new connections
+	 * @throws DatabaseUnavailableException If the factory couldn't be resolved (e.g. the 
+	 * driver couldn't be found)
+	 */
+	public synchronized ConnectionFactory getConnectionFactory() throws DatabaseUnavailableException
+	{
+		if (this.connectionFactory == null)
+			this.connectionFactory = DriverConnectionFactory.resolve(this.driver, this.connectionTarget, 
+					this.user, this.password, this.driverProperties);
+		return this.connectionFactory;
+	}
+	
+	/**
+	 * Specifies the factory used for opening new connections. When a factory is specified, 
+	 * the connection target, user, password and driver settings are not used for opening 
+	 * connections.
+	 * @param factory The new connection factory. None if the factory should be resolved from 
+	 * the other settings.
+	 */
+	public synchronized void setConnectionFactory(Option<ConnectionFactory> factory)
+	{
+		this.connectionFactory = factory.getValue();
+		this.customConnectionFactory = factory.isDefined();
+	}
+	
+	
+	/**
+	 * @return The read replicas of this configuration's server
+	 */
+	public ImmutableList<DatabaseConfiguration> getReplicas()
+	{
+		return ImmutableList.of(this.replicas);
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	/**
+	 * Registers a read replica for this configuration's server. The replica should contain 
+	 * the same databases as the primary server.
+	 * @param replica The configuration used for connecting to the replica
+	 * @see Database#onPrimary(utopia.flow.function.ThrowingSupplier)
+	 */
+	public void addReplica(DatabaseConfiguration replica)
+	{
+		this.replicas.add(replica);
+	}
+	
+	/**
+	 * Removes a read replica from this configuration
+	 * @param replica The replica that is removed
+	 */
+	public void removeReplica(DatabaseConfiguration replica)
+	{
+		this.replicas.remove(replica);
+	}
+	
+	/**
+	 * Selects the replica the next read should use. The replicas are used in turns. Replicas 
+	 * that are currently blocked by their circuit breaker are skipped.
+	 * @return The replica to use. None if there are no available replicas, in which case 
+	 * the primary server should be used.
+	 */
+	public Option<DatabaseConfiguration> nextReplica()
+	{
+		if (this.replicas.isEmpty())
+			return Option.none();
+		
+		DatabaseConfiguration[] current = this.replicas.toArray(new DatabaseConfiguration[0]);
+		int start = Math.floorMod(this.replicaCounter.getAndIncrement(), current.length);
+		for (int i = 0; i < current.length; i++)
+		{
+			DatabaseConfiguration replica = current[(start + i) % current.length];
+			if (replica.getCircuitBreaker().forAll(CircuitBreaker::allowsAttempts))
+				return Option.some(replica);
+		}
+		
+		return Option.none();
+	}
+	
+	private void resetConnectionFactory()
+	{
+		if (!this.customConnectionFactory)
+			this.connectionFactory = null;
+	}
+}
@@ -1,35 +1,34 @@
 package utopia.vault.database;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import utopia.flow.structure.Option;
 import utopia.vault.generics.BasicSqlDataType;
 
 /**
  * DatabaseSettings is a static collection of variables that are used in 
  * database accessing and handling. Most of the variables are protected so they can only be 
- * used inside this package.
+ * used inside this package. The static connection settings modify the default 
+ * configuration. Databases may be bound to other configurations as well.
  * @author Mikko Hilpinen
  * @since 17.7.2014
+ * @see DatabaseConfiguration
  */
 public class DatabaseSettings
 {
 	// ATTRIBUTES	-----------------------------------------------------
 	
 	/**
-	 * ConnectionTarget is the host of the MariaDB server
-	 */
-	private static String connectionTarget = "jdbc:mysql://localhost:3306/";
-	/**
-	 * passWord is the password used to identify the user accessing the database
+	 * The configuration used by the databases that haven't been bound to other configurations
 	 */
-	private static Option<String> password = Option.none();
+	private static final DatabaseConfiguration defaultConfiguration = new DatabaseConfiguration( 
+			"jdbc:mysql://localhost:3306/", "root", Option.none(), Option.none());
 	/**
-	 * user is the user used to access the database
+	 * Lower case database name -> configuration used by the database
 	 */
-	private static String user = "root";
-	/**
-	 * The driver used when accessing the database
-	 */
-	private static Option<String> driver = Option.none();
+	private static final Map<String, DatabaseConfiguration> bindings = new ConcurrentHashMap<>();
 	
 	
 	// CONSTRUCTOR	----------------------------------------------------
@@ -42,12 +41,21 @@ public class DatabaseSettings
 	
 	// GETTERS & SETTERS	--------------------------------------------
 	
+	/**
+	 * @return The configuration used by the databases that haven't been bound to other 
+	 * configurations. The static settings in this class modify this configuration.
+	 */
+	public static DatabaseConfiguration getDefaultConfiguration()
+	{
+		return defaultConfiguration;
+	}
+	
 	/**
 	 * @return The server hosting the database (doesn't include database name)
 	 */
 	protected static String getConnectionTarget()
 	{
-		return connectionTarget;
+		return defaultConfiguration.getConnectionTarget();
 	}
 	
 	/**
@@ -55,7 +63,7 @@ public class DatabaseSettings
 	 */
 	protected static String getUser()
 	{
-		return user;
+		return defaultConfiguration.getUser();
 	}
 	
 	/**
@@ -63,7 +71,7 @@ public class DatabaseSettings
 	 */
 	protected static Option<String> getPassword()
 	{
-		return password;
+		return defaultConfiguration.getPassword();
 	}
 	
 	/**
@@ -71,7 +79,17 @@ public class DatabaseSettings
 	 */
 	protected static Option<String> getDriver()
 	{
-		return driver;
+		return defaultConfiguration.getDriver();
+	}
+	
+	/**
+	 * @return The circuit breaker used when opening new connections with the default 
+	 * configuration. None if circuit breaking is disabled. The breaker's state may be used for 
+	 * monitoring the database availability.
+	 */
+	public static Option<CircuitBreaker> getCircuitBreaker()
+	{
+		return defaultConfiguration.getCircuitBreaker();
 	}
 	
 	/**
@@ -81,7 +99,7 @@ public class DatabaseSettings
 	 */
 	public static void setConnectionTarget(String newTarget)
 	{
-		connectionTarget = newTarget;
+		defaultConfiguration.setConnectionTarget(newTarget);
 	}
 	
 	/**
@@ -90,7 +108,7 @@ public class DatabaseSettings
 	 */
 	public static void setPassword(String newPassword)
 	{
-		password = Option.some(newPassword);
+		defaultConfiguration.setPassword(newPassword);
 	}
 	
 	/**
@@ -99,7 +117,7 @@ public class DatabaseSettings
 	 */
 	public static void setUser(String newUser)
 	{
-		user = newUser;
+		defaultConfiguration.setUser(newUser);
 	}
 	
 	/**
@@ -108,7 +126,49 @@ public class DatabaseSettings
 	 */
 	public static void setDriver(String newDriver)
 	{
-		driver = Option.some(newDriver);
+		defaultConfiguration.setDriver(newDriver);
+	}
+	
+	/**
+	 * Specifies the factory used for opening new connections with the default configuration
+	 * @param factory The new connection factory. None if the factory should be resolved from 
+	 * the other settings.
+	 * @see DatabaseConfiguration#setConnectionFactory(Option)
+	 */
+	public static void setConnectionFactory(Option<ConnectionFactory> factory)
+	{
+		defaultConfiguration.setConnectionFactory(factory);
+	}
+	
+	/**
+	 * Changes the timeout used in queries that don't specify a timeout of their own
+	 * @param timeout The new default timeout. None if queries shouldn't time out by default.
+	 * @see Database#setQueryTimeout(Duration)
+	 */
+	public static void setDefaultQueryTimeout(Option<Duration> timeout)
+	{
+		defaultConfiguration.setDefaultQueryTimeout(timeout);
+	}
+	
+	/**
+	 * Changes whether the query timeouts are also sent to the server with the select statements
+	 * @param enabled Whether server side statement timeouts should be used
+	 * @see DatabaseConfiguration#setServerStatementTimeouts(boolean)
+	 */
+	public static void setServerStatementTimeouts(boolean enabled)
+	{
+		defaultConfiguration.setServerStatementTimeouts(enabled);
+	}
+	
+	/**
+	 * Changes the circuit breaker used when opening new connections with the default 
+	 * configuration
+	 * @param breaker The new circuit breaker. None if circuit breaking should be disabled.
+	 * @see DatabaseConfiguration#setCircuitBreaker(Option)
+	 */
+	public static void setCircuitBreaker(Option<CircuitBreaker> breaker)
+	{
+		defaultConfiguration.setCircuitBreaker(breaker);
 	}
 	
 	
@@ -135,4 +195,39 @@ public class DatabaseSettings
 		// Initialises the sql data types as well
 		BasicSqlDataType.initialise();
 	}
+	
+	/**
+	 * Binds a database to a configuration. The tables of the database will be accessed using 
+	 * the configuration's server and settings.
+	 * @param databaseName The name of the database
+	 * @param configuration The configuration used by the database
+	 */
+	public static void bind(String databaseName, DatabaseConfiguration configuration)
+	{
+		bindings.put(databaseName.toLowerCase(), configuration);
+	}
+	
+	/**
+	 * Removes a database binding. The database will use the default configuration afterwards.
+	 * @param databaseName The name of the database
+	 */
+	public static void unbind(String databaseName)
+	{
+		bindings.remove(databaseName.toLowerCase());
+	}
+	
+	/**
+	 * Finds the configuration used by a database
+	 * @param databaseName The name of the database. May be null.
+	 * @return The configuration bound to the database. The default configuration if the 
+	 * database hasn't been bound.
+	 */
+	public static DatabaseConfiguration getConfiguration(String databaseName)
+	{
+		if (databaseName == null)
+			return defaultConfiguration;
+		
+		DatabaseConfiguration configuration = bindings.get(databaseName.toLowerCase());
+		return configuration == null ? defaultConfiguration : configuration;
+	}
 }
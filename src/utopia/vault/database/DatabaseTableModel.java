@@ -129,9 +129,11 @@ public class DatabaseTableModel extends TableModel
 	}
 	
 	/**
-	 * Updates the model's current status to the database
+	 * Updates the model's modified attributes to the database. No query is performed if the 
+	 * model hasn't been modified since it was last read or written.
 	 * @param skipNullUpdates Should null assignments be skipped
-	 * @return Was any update query performed
+	 * @return Whether any rows were updated. False if the model doesn't have a condition, 
+	 * wasn't modified or if no row matched it.
 	 * @throws DatabaseException If the query failed
 	 * @throws DatabaseUnavailableException If the database couldn't be accessed
 	 */
@@ -143,8 +145,7 @@ public class DatabaseTableModel extends TableModel
 			return false;
 		else
 		{
-			Database.update(this, condition, skipNullUpdates, this.connection);
-			return true;
+			return Database.update(this, condition, skipNullUpdates, this.connection) > 0;
 		}
 	}
 	
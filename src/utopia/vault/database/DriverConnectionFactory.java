@@ -0,0 +1,135 @@
+package utopia.vault.database;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import utopia.flow.structure.Option;
+
+/**
+ * This connection factory opens the connections directly through a JDBC driver. The driver is 
+ * instantiated (or looked up) only once and the connection properties are prepared beforehand, 
+ * so opening a connection doesn't need to go through the synchronised driver registry.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class DriverConnectionFactory implements ConnectionFactory
+{
+	// ATTRIBUTES	------------------
+	
+	private final Driver driver;
+	private final String connectionTarget;
+	private final Properties properties;
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new connection factory
+	 * @param driver The driver used for opening the connections
+	 * @param connectionTarget The server address, not including the database name. 
+	 * For example: "jdbc:mysql://localhost:3306/"
+	 * @param properties The connection properties, including the user and the password
+	 */
+	public DriverConnectionFactory(Driver driver, String connectionTarget, Properties properties)
+	{
+		this.driver = driver;
+		this.connectionTarget = connectionTarget;
+		// The properties are copied so that later changes won't affect this factory
+		this.properties = new Properties();
+		this.properties.putAll(properties);
+	}
+	
+	/**
+	 * Creates a new connection factory by resolving the driver
+	 * @param driverClassName The name of the driver class. None if the driver should be looked 
+	 * up from the registered drivers.
+	 * @param connectionTarget The server address, not including the database name. 
+	 * For example: "jdbc:mysql://localhost:3306/"
+	 * @param user The user used when connecting to the server
+	 * @param password The password used when connecting to the server
+	 * @return A new connection factory
+	 * @throws DatabaseUnavailableException If the driver couldn't be resolved
+	 */
+	public static DriverConnectionFactory resolve(Option<String> driverClassName, String connectionTarget, 
+			String user, Option<String> password) throws DatabaseUnavailableException
+	{
+		return resolve(driverClassName, connectionTarget, user, password, new Properties());
+	}
+	
+	/**
+	 * Creates a new connection factory by resolving the driver
+	 * @param driverClassName The name of the driver class. None if the driver should be looked 
+	 * up from the registered drivers.
+	 * @param connectionTarget The server address, not including the database name. 
+	 * For example: "jdbc:mysql://localhost:3306/"
+	 * @param user The user used when connecting to the server
+	 * @param password The password used when connecting to the server
+	 * @param driverProperties Additional driver specific connection properties
+	 * @return A new connection factory
+	 * @throws DatabaseUnavailableException If the driver couldn't be resolved
+	 */
+	public static DriverConnectionFactory resolve(Option<String> driverClassName, String connectionTarget, 
+			String user, Option<String> password, Properties driverProperties) throws DatabaseUnavailableException
+	{
+		Driver driver;
+		if (driverClassName.isDefined())
+		{
+			try
+			{
+				driver = (Driver) Class.forName(driverClassName.get()).getDeclaredConstructor().newInstance();
+			}
+			catch (Exception e)
+			{
+				throw new DatabaseUnavailableException("Can't use driver " + driverClassName.get(), e);
+			}
+		}
+		else
+		{
+			try
+			{
+				driver = DriverManager.getDriver(connectionTarget);
+			}
+			catch (SQLException e)
+			{
+				throw new DatabaseUnavailableException("No driver found for " + connectionTarget, e);
+			}
+		}
+		
+		Properties properties = new Properties();
+		properties.putAll(driverProperties);
+		if (user != null)
+			properties.setProperty("user", user);
+		password.forEach(p -> properties.setProperty("password", p));
+		
+		return new DriverConnectionFactory(driver, connectionTarget, properties);
+	}
+	
+	
+	// IMPLEMENTED METHODS	----------
+	
+	@Override
+	public Connection openConnection(String databaseName) throws SQLException
+	{
+		String url = databaseName == null ? this.connectionTarget : this.connectionTarget + databaseName;
+		Connection connection = this.driver.connect(url, this.properties);
+		// The driver returns null for urls it doesn't support
+		if (connection == null)
+			throw new SQLException("Driver " + this.driver.getClass().getName() + " doesn't accept url " + url);
+		
+		return connection;
+	}
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * @return The driver used for opening the connections
+	 */
+	public Driver getDriver()
+	{
+		return this.driver;
+	}
+}
@@ -0,0 +1,254 @@
+package utopia.vault.database;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import utopia.flow.generics.Value;
+import utopia.flow.structure.ImmutableList;
+import utopia.flow.structure.Option;
+import utopia.flow.structure.Try;
+import utopia.vault.database.ComparisonCondition.Operator;
+import utopia.vault.generics.Column;
+import utopia.vault.generics.ColumnVariable;
+import utopia.vault.generics.Table;
+import utopia.vault.generics.TableModel;
+
+/**
+ * A job queue uses a database table as a durable queue that can be consumed by multiple 
+ * workers in multiple processes. Each worker claims a batch of rows by leasing them. The 
+ * claims use 'FOR UPDATE SKIP LOCKED' selects, so that concurrent workers never wait for each 
+ * other's rows. A lease must be renewed with {@link #heartbeat(ImmutableList)} while the job is 
+ * being processed. Rows whose lease has expired (for example because the worker crashed) are 
+ * claimed again by other workers. The jobs are therefore processed at least once.<br> 
+ * The table must have a primary column, a column for the lease owner (string) and a column 
+ * for the lease expiration time (datetime). Both lease columns must be nullable. The lease 
+ * times are based on the clocks of the worker processes, which should therefore be kept 
+ * in sync. Requires MariaDB 10.6 or later.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class JobQueue
+{
+	// ATTRIBUTES	------------------
+	
+	private static final int CLAIM_MAX_ATTEMPTS = 3;
+	
+	private final ConnectionManager connectionManager;
+	private final Table table;
+	private final Column ownerColumn;
+	private final Column leaseExpiresColumn;
+	private final Option<Condition> readyCondition;
+	private final Duration leaseDuration;
+	private final Value workerId;
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new queue consumer. Each worker process should use its own queue instance, 
+	 * which can then be shared between the worker threads of the process.
+	 * @param connectionManager The connection manager that provides the connections
+	 * @param table The table that contains the jobs
+	 * @param ownerColumn The column that holds the identifier of the worker that has leased 
+	 * the row. Null when the row hasn't been leased.
+	 * @param leaseExpiresColumn The column that holds the time when the row's lease expires. 
+	 * Null when the row hasn't been leased.
+	 * @param readyCondition An additional condition the rows must fulfil in order to be 
+	 * claimed (for example a status check). None if all rows in the table are jobs waiting to 
+	 * be processed.
+	 * @param leaseDuration How long a claimed row stays leased without a heartbeat
+	 */
+	public JobQueue(ConnectionManager connectionManager, Table table, Column ownerColumn, 
+			Column leaseExpiresColumn, Option<Condition> readyCondition, Duration leaseDuration)
+	{
+		this.connectionManager = connectionManager;
+		this.table = table;
+		this.ownerColumn = ownerColumn;
+		this.leaseExpiresColumn = leaseExpiresColumn;
+		this.readyCondition = readyCondition;
+		this.leaseDuration = leaseDuration;
+		this.workerId = Value.String(UUID.randomUUID().toString());
+	}
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * @return The identifier this queue instance uses as the lease owner
+	 */
+	public Value getWorkerId()
+	{
+		return this.workerId;
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	/**
+	 * Claims a batch of unleased jobs, as well as jobs whose lease has expired. Rows that are 
+	 * being claimed by other workers at the same time are skipped.
+	 * @param maxJobs The maximum number of jobs claimed
+	 * @return The claimed jobs, in the order of their index. Empty if there were no available jobs.
+	 * @throws DatabaseException If the claim failed
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 */
+	public ImmutableList<TableModel> claim(int maxJobs) throws DatabaseException, DatabaseUnavailableException
+	{
+		if (maxJobs <= 0)
+			return ImmutableList.empty();
+		
+		Try<ImmutableList<TableModel>> result = this.connectionManager.inTransaction( 
+				TransactionIsolation.READ_COMMITTED, CLAIM_MAX_ATTEMPTS, db -> 
+		{
+			LocalDateTime now = LocalDateTime.now();
+			Condition available = new IsNullCondition(this.ownerColumn).or(new ComparisonCondition( 
+					this.leaseExpiresColumn, Operator.SMALLER, Value.DateTime(now)));
+			Condition where = this.readyCondition.map(ready -> (Condition) ready.and(available)).getOrElse(available);
+			
+			ImmutableList<ImmutableList<ColumnVariable>> rows = Database.select(Selection.ALL, this.table, 
+					ImmutableList.empty(), Option.some(where), Option.some(maxJobs), Option.none(), 
+					Option.some(new OrderBy(this.table.getPrimaryColumn())), LockMode.FOR_UPDATE_SKIP_LOCKED, db);
+			if (rows.isEmpty())
+				return ImmutableList.<TableModel>empty();
+			
+			// Leases the selected rows
+			ImmutableList<ColumnVariable> lease = ImmutableList.withValues( 
+					this.ownerColumn.assignValue(this.workerId), 
+					this.leaseExpiresColumn.assignValue(Value.DateTime(now.plus(this.leaseDuration))));
+			ImmutableList<TableModel> jobs = rows.map(row -> new TableModel(this.table, row));
+			Database.update(this.table, new ValueAssignment(false, lease), 
+					Option.some(new InCondition(this.table.getPrimaryColumn(), jobs.map(TableModel::getIndex))), db);
+			
+			jobs.forEach(job -> job.addAttributes(lease, true));
+			return jobs;
+		});
+		
+		return unwrap(result);
+	}
+	
+	/**
+	 * Extends the leases of jobs claimed by this worker
+	 * @param jobIndices The indices of the jobs that are still being processed
+	 * @return The number of leases that were extended. If this is smaller than the number of 
+	 * provided jobs, some of the leases had already been lost to other workers.
+	 * @throws DatabaseException If the update failed
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 */
+	public int heartbeat(ImmutableList<Value> jobIndices) throws DatabaseException, DatabaseUnavailableException
+	{
+		ValueAssignment set = new ValueAssignment(false, this.leaseExpiresColumn, 
+				Value.DateTime(LocalDateTime.now().plus(this.leaseDuration)));
+		return updateOwned(jobIndices, set);
+	}
+	
+	/**
+	 * Acknowledges that jobs have been processed by deleting them from the queue
+	 * @param jobIndices The indices of the finished jobs
+	 * @return The number of deleted jobs. Jobs that were no longer leased by this worker are 
+	 * not deleted.
+	 * @throws DatabaseException If the delete failed
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 */
+	public int acknowledge(ImmutableList<Value> jobIndices) throws DatabaseException, DatabaseUnavailableException
+	{
+		if (jobIndices.isEmpty())
+			return 0;
+		
+		Condition where = ownedCondition(jobIndices);
+		return unwrap(this.connectionManager.tryConnection(this.table.getDatabaseName(), 
+				db -> Database.delete(this.table, Option.some(where), db)));
+	}
+	
+	/**
+	 * Acknowledges that jobs have been processed by updating them. The leases of the jobs are 
+	 * released. The provided assignment should make the rows fail the queue's ready 
+	 * condition, otherwise the jobs will be claimed again.
+	 * @param jobIndices The indices of the finished jobs
+	 * @param finishedState The values that are set to the finished jobs (for example a status)
+	 * @return The number of updated jobs. Jobs that were no longer leased by this worker are 
+	 * not updated.
+	 * @throws DatabaseException If the update failed
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 */
+	public int acknowledge(ImmutableList<Value> jobIndices, ImmutableList<? extends ColumnVariable> finishedState) 
+			throws DatabaseException, DatabaseUnavailableException
+	{
+		ValueAssignment set = new ValueAssignment(false, finishedState);
+		appendLeaseRelease(set);
+		return updateOwned(jobIndices, set);
+	}
+	
+	/**
+	 * Releases the leases of jobs without processing them, so that they can be claimed again 
+	 * immediately
+	 * @param jobIndices The indices of the released jobs
+	 * @return The number of released jobs
+	 * @throws DatabaseException If the update failed
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 */
+	public int release(ImmutableList<Value> jobIndices) throws DatabaseException, DatabaseUnavailableException
+	{
+		ValueAssignment set = new ValueAssignment(false);
+		appendLeaseRelease(set);
+		return updateOwned(jobIndices, set);
+	}
+	
+	/**
+	 * Releases all expired leases in the queue. Claims already include expired jobs, but this 
+	 * method may be used for keeping the lease columns up to date.
+	 * @return The number of released leases
+	 * @throws DatabaseException If the update failed
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 */
+	public int reclaimExpired() throws DatabaseException, DatabaseUnavailableException
+	{
+		ValueAssignment set = new ValueAssignment(false);
+		appendLeaseRelease(set);
+		Condition expired = new ComparisonCondition(this.leaseExpiresColumn, Operator.SMALLER, 
+				Value.DateTime(LocalDateTime.now()));
+		return unwrap(this.connectionManager.tryConnection(this.table.getDatabaseName(), 
+				db -> Database.update(this.table, set, Option.some(expired), db)));
+	}
+	
+	private int updateOwned(ImmutableList<Value> jobIndices, ValueAssignment set) throws DatabaseException, 
+			DatabaseUnavailableException
+	{
+		if (jobIndices.isEmpty())
+			return 0;
+		
+		Condition where = ownedCondition(jobIndices);
+		return unwrap(this.connectionManager.tryConnection(this.table.getDatabaseName(), 
+				db -> Database.update(this.table, set, Option.some(where), db)));
+	}
+	
+	private Condition ownedCondition(ImmutableList<Value> jobIndices)
+	{
+		return new InCondition(this.table.getPrimaryColumn(), jobIndices).and( 
+				new ComparisonCondition(this.ownerColumn, this.workerId));
+	}
+	
+	private void appendLeaseRelease(ValueAssignment set)
+	{
+		set.append(this.ownerColumn, Value.NullValue(this.ownerColumn.getType()));
+		set.append(this.leaseExpiresColumn, Value.NullValue(this.leaseExpiresColumn.getType()));
+	}
+	
+	private static <T> T unwrap(Try<T> result) throws DatabaseException, DatabaseUnavailableException
+	{
+		Option<Exception> failure = result.failure();
+		if (failure.isDefined())
+		{
+			Exception e = failure.get();
+			if (e instanceof DatabaseException)
+				throw (DatabaseException) e;
+			else if (e instanceof DatabaseUnavailableException)
+				throw (DatabaseUnavailableException) e;
+			else if (e instanceof RuntimeException)
+				throw (RuntimeException) e;
+			else
+				throw new DatabaseException(e);
+		}
+		return result.get();
+	}
+}
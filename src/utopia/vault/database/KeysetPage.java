@@ -0,0 +1,67 @@
+package utopia.vault.database;
+
+import utopia.flow.generics.Value;
+import utopia.flow.structure.ImmutableList;
+import utopia.flow.structure.Option;
+import utopia.vault.generics.ColumnVariable;
+
+/**
+ * A keyset page contains a single page of rows read with keyset (seek) pagination, along with 
+ * the key that can be used for continuing to the next page
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ * @see Database#selectPage
+ */
+public class KeysetPage
+{
+	// ATTRIBUTES	------------------
+	
+	private final ImmutableList<ImmutableList<ColumnVariable>> rows;
+	private final Option<ImmutableList<Value>> continuationKey;
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new page
+	 * @param rows The rows on this page
+	 * @param continuationKey The key of the last row on this page. None if this is the last page.
+	 */
+	public KeysetPage(ImmutableList<ImmutableList<ColumnVariable>> rows,
+			Option<ImmutableList<Value>> continuationKey)
+	{
+		this.rows = rows;
+		this.continuationKey = continuationKey;
+	}
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * @return The rows on this page. Each row contains the selected column values.
+	 */
+	public ImmutableList<ImmutableList<ColumnVariable>> getRows()
+	{
+		return this.rows;
+	}
+	
+	/**
+	 * @return The key that should be passed when reading the next page. None if there are no 
+	 * more pages to read.
+	 */
+	public Option<ImmutableList<Value>> getContinuationKey()
+	{
+		return this.continuationKey;
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	/**
+	 * @return Whether there are more rows available after this page
+	 */
+	public boolean hasNext()
+	{
+		return this.continuationKey.isDefined();
+	}
+}
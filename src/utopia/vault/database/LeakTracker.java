@@ -0,0 +1,227 @@
+package utopia.vault.database;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import utopia.flow.structure.Option;
+import utopia.vault.util.SharedScheduler;
+
+/**
+ * Leak trackers keep count of the connection leases that haven't been released. When leak 
+ * detection is enabled, a sample of the leases also records the stack trace of the code that 
+ * acquired the lease. Sampled leases that are held for too long are reported to a listener.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ * @see ConnectionManager#getLeakTracker()
+ * @see Database#getLeakTracker()
+ */
+public class LeakTracker
+{
+	// ATTRIBUTES	------------------
+	
+	// Returned for the leases that aren't sampled
+	private static final Lease UNTRACKED = new Lease(null, null, null);
+	
+	private final AtomicLong outstanding = new AtomicLong();
+	private final Set<Lease> tracked = ConcurrentHashMap.newKeySet();
+	
+	private volatile double sampleRate = 0;
+	private Duration threshold = Duration.ZERO;
+	private Option<Consumer<? super Lease>> listener = Option.none();
+	private Option<ScheduledFuture<?>> checkTask = Option.none();
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * @return The number of leases that have been acquired but not yet released
+	 */
+	public long getOutstandingLeases()
+	{
+		return this.outstanding.get();
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	/**
+	 * Enables leak detection
+	 * @param threshold How long a lease may be held before it is reported as a leak
+	 * @param sampleRate The portion of leases [0, 1] whose stack traces are recorded. Capturing 
+	 * the stack trace is relatively expensive, so small values should be preferred in production.
+	 * @param listener The listener that is informed about the leaked leases. Each lease is 
+	 * reported only once.
+	 */
+	public synchronized void enable(Duration threshold, double sampleRate, Consumer<? super Lease> listener)
+	{
+		disable();
+		this.threshold = threshold;
+		this.listener = Option.some(listener);
+		this.sampleRate = sampleRate;
+		
+		Duration checkInterval = threshold.dividedBy(2);
+		if (checkInterval.toMillis() < 100)
+			checkInterval = Duration.ofMillis(100);
+		this.checkTask = Option.some(SharedScheduler.scheduleRepeating(this::reportLeaks, checkInterval));
+	}
+	
+	/**
+	 * Disables leak detection. The outstanding leases are still counted.
+	 */
+	public synchronized void disable()
+	{
+		this.sampleRate = 0;
+		this.checkTask.forEach(task -> task.cancel(false));
+		this.checkTask = Option.none();
+		this.tracked.clear();
+	}
+	
+	/**
+	 * Registers a new lease
+	 * @param resource The leased resource. Its string representation is used as the lease's 
+	 * description when the lease is tracked.
+	 * @return The lease that must be released later
+	 */
+	public Lease acquire(Object resource)
+	{
+		this.outstanding.incrementAndGet();
+		
+		double rate = this.sampleRate;
+		if (rate <= 0 || (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate))
+			return UNTRACKED;
+		
+		Lease lease = new Lease(String.valueOf(resource), Thread.currentThread().getName(), 
+				new Throwable("Lease acquired here"));
+		this.tracked.add(lease);
+		return lease;
+	}
+	
+	/**
+	 * Releases a lease
+	 * @param lease A lease previously acquired from this tracker
+	 */
+	public void release(Lease lease)
+	{
+		this.outstanding.decrementAndGet();
+		if (lease != UNTRACKED)
+			this.tracked.remove(lease);
+	}
+	
+	private void reportLeaks()
+	{
+		Consumer<? super Lease> listener;
+		Instant threshold;
+		synchronized (this)
+		{
+			if (this.listener.isEmpty())
+				return;
+			listener = this.listener.get();
+			threshold = Instant.now().minus(this.threshold);
+		}
+		
+		for (Lease lease : this.tracked)
+		{
+			if (!lease.reported && lease.acquireTime.isBefore(threshold))
+			{
+				lease.reported = true;
+				listener.accept(lease);
+			}
+		}
+	}
+	
+	
+	// NESTED CLASSES	--------------
+	
+	/**
+	 * A lease represents a single acquired resource
+	 * @author Mikko Hilpinen
+	 * @since 18.10.2026
+	 */
+	public static class Lease
+	{
+		// ATTRIBUTES	--------------
+		
+		private final String description;
+		private final String threadName;
+		private final Throwable acquireTrace;
+		private final Instant acquireTime = Instant.now();
+		private volatile boolean reported = false;
+		
+		
+		// CONSTRUCTOR	--------------
+		
+		private Lease(String description, String threadName, Throwable acquireTrace)
+		{
+			this.description = description;
+			this.threadName = threadName;
+			this.acquireTrace = acquireTrace;
+		}
+		
+		
+		// IMPLEMENTED METHODS	------
+		
+		@Override
+		public String toString()
+		{
+			return this.description + " acquired by " + this.threadName + " at " + this.acquireTime + 
+					" (held for " + getHoldDuration() + ")";
+		}
+		
+		
+		// ACCESSORS	--------------
+		
+		/**
+		 * @return A description of the leased resource
+		 */
+		public String getDescription()
+		{
+			return this.description;
+		}
+		
+		/**
+		 * @return The name of the thread that acquired the lease
+		 */
+		public String getThreadName()
+		{
+			return this.threadName;
+		}
+		
+		/**
+		 * @return The time when the lease was acquired
+		 */
+		public Instant getAcquireTime()
+		{
+			return this.acquireTime;
+		}
+		
+		/**
+		 * @return How long the lease has been held
+		 */
+		public Duration getHoldDuration()
+		{
+			return Duration.between(this.acquireTime, Instant.now());
+		}
+		
+		/**
+		 * @return The stack trace of the code that acquired the lease
+		 */
+		public StackTraceElement[] getStackTrace()
+		{
+			return this.acquireTrace == null ? new StackTraceElement[0] : this.acquireTrace.getStackTrace();
+		}
+		
+		/**
+		 * @return An exception that can be logged to show where the lease was acquired
+		 */
+		public Throwable getAcquireTrace()
+		{
+			return this.acquireTrace;
+		}
+	}
+}
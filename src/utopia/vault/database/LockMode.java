@@ -0,0 +1,67 @@
+package utopia.vault.database;
+
+/**
+ * Lock modes are used in select queries for locking the read rows until the end of the 
+ * current transaction. Locking reads only make sense inside a transaction, since in 
+ * auto-commit mode the locks are released as soon as the query completes.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ * @see ConnectionManager#inTransaction(TransactionIsolation, utopia.flow.function.ThrowingFunction)
+ */
+public enum LockMode
+{
+	/**
+	 * The read rows are not locked
+	 */
+	NONE(""),
+	/**
+	 * The read rows are locked for writing. Other transactions can't modify or lock the 
+	 * rows until this transaction ends.
+	 */
+	FOR_UPDATE(" FOR UPDATE"),
+	/**
+	 * Like {@link #FOR_UPDATE}, but the query fails immediately if a row is already locked 
+	 * (MariaDB 10.3+)
+	 */
+	FOR_UPDATE_NOWAIT(" FOR UPDATE NOWAIT"),
+	/**
+	 * Like {@link #FOR_UPDATE}, but rows locked by other transactions are left out of the 
+	 * results. This allows parallel workers to claim separate rows (MariaDB 10.6+).
+	 */
+	FOR_UPDATE_SKIP_LOCKED(" FOR UPDATE SKIP LOCKED"),
+	/**
+	 * The read rows are locked for reading. Other transactions can read the rows but can't 
+	 * modify them until this transaction ends.
+	 */
+	SHARE(" LOCK IN SHARE MODE"),
+	/**
+	 * Like {@link #SHARE}, but the query fails immediately if a row is locked for writing 
+	 * (MariaDB 10.3+)
+	 */
+	SHARE_NOWAIT(" LOCK IN SHARE MODE NOWAIT");
+	
+	
+	// ATTRIBUTES	-----------------
+	
+	private final String sql;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	private LockMode(String sql)
+	{
+		this.sql = sql;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * @return The sql clause that is appended at the end of a select query. Empty string for 
+	 * no locking.
+	 */
+	public String toSql()
+	{
+		return this.sql;
+	}
+}
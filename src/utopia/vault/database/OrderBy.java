@@ -85,6 +85,17 @@ public class OrderBy
 	}
 	
 	
+	// ACCESSORS	---------------
+	
+	/**
+	 * @return The columns used in this order, plus whether the order is ascending per column
+	 */
+	public ImmutableList<Pair<Column, Boolean>> getColumns()
+	{
+		return this.columns;
+	}
+	
+	
 	// OTHER METHODS	-----------
 	
 	/**
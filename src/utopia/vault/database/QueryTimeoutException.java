@@ -0,0 +1,67 @@
+package utopia.vault.database;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+import utopia.flow.structure.Option;
+import utopia.vault.generics.Table;
+
+/**
+ * These exceptions are thrown when a query is cancelled because it exceeded its timeout or 
+ * the deadline of the current operation
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ * @see Database#setQueryTimeout(java.time.Duration)
+ * @see Database#withDeadline(java.time.Duration, utopia.flow.function.ThrowingSupplier)
+ */
+public class QueryTimeoutException extends DatabaseException
+{
+	// ATTRIBUTES	-------------------
+	
+	private static final long serialVersionUID = -3401283624508930567L;
+	
+	// Query execution was interrupted (also used when a statement is cancelled)
+	private static final int ER_QUERY_INTERRUPTED = 1317;
+	// MariaDB max_statement_time exceeded
+	private static final int ER_STATEMENT_TIMEOUT = 1969;
+	// MySQL MAX_EXECUTION_TIME exceeded
+	private static final int ER_QUERY_TIMEOUT = 3024;
+	
+	
+	// CONSTRUCTOR	-------------------
+	
+	/**
+	 * Creates a new exception
+	 * @param cause The cause of this exception
+	 * @param sqlStatement The sql statement that was being used
+	 * @param usedTable The table that was being used
+	 * @param whereClause The where condition that was being used (optional)
+	 * @param assignedValues The values that were being assigned
+	 * @param selection The selected columns
+	 */
+	public QueryTimeoutException(Throwable cause, String sqlStatement, Table usedTable, 
+			Option<Condition> whereClause, ValueAssignment assignedValues, Selection selection)
+	{
+		super(cause, sqlStatement, usedTable, whereClause, assignedValues, selection);
+	}
+	
+	
+	// OTHER METHODS	---------------
+	
+	/**
+	 * @param cause An exception thrown during a query
+	 * @return Whether the exception was caused by a query timeout or cancellation
+	 */
+	static boolean isTimeout(Throwable cause)
+	{
+		if (cause instanceof SQLTimeoutException)
+			return true;
+		else if (cause instanceof SQLException)
+		{
+			int code = ((SQLException) cause).getErrorCode();
+			return code == ER_QUERY_INTERRUPTED || code == ER_STATEMENT_TIMEOUT || code == ER_QUERY_TIMEOUT;
+		}
+		else
+			return false;
+	}
+}
@@ -0,0 +1,129 @@
+package utopia.vault.database;
+
+import utopia.flow.generics.Value;
+import utopia.flow.structure.ImmutableList;
+import utopia.flow.structure.Pair;
+import utopia.vault.generics.Column;
+
+/**
+ * Seek conditions are used in keyset pagination. They accept only the rows that come after a 
+ * previously read key in a specific ordering. When the ordering is backed by an index, the 
+ * database can jump directly to the next page instead of skipping rows like with OFFSET.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class SeekCondition extends Condition
+{
+	// ATTRIBUTES	------------------
+	
+	private ImmutableList<Pair<Column, Boolean>> order;
+	private ImmutableList<Value> key;
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new seek condition
+	 * @param order The ordering used when reading the rows. The ordered columns should 
+	 * form a unique key, otherwise rows may be skipped between pages
+	 * @param lastKey The key values of the last read row, one for each ordered column
+	 */
+	public SeekCondition(OrderBy order, ImmutableList<Value> lastKey)
+	{
+		this.order = order.getColumns();
+		this.key = lastKey;
+	}
+	
+	
+	// IMPLEMENTED METHODS	----------
+	
+	@Override
+	public String toSql() throws StatementParseException
+	{
+		if (this.order.isEmpty())
+			throw new StatementParseException("Seek condition requires an ordering");
+		if (this.order.size() != this.key.size())
+			throw new StatementParseException("Seek key has " + this.key.size() +
+					" values but the ordering has " + this.order.size() + " columns");
+		if (this.key.exists(v -> v.isNull()))
+			throw new StatementParseException("Seek key can't contain null values");
+		
+		StringBuilder sql = new StringBuilder();
+		
+		// A single column is a simple comparison
+		if (this.order.size() == 1)
+			appendComparison(sql, this.order.head());
+		// When all columns share a direction, a row value comparison can be used: (a, b) > (?, ?)
+		else if (usesSingleDirection())
+		{
+			sql.append("(");
+			sql.append(this.order.map(p -> p.first().getColumnNameWithTable()).reduce(
+					(total, part) -> total + ", " + part));
+			sql.append(")");
+			sql.append(this.order.head().second() ? " > (" : " < (");
+			sql.append(this.order.map(p -> PreparedSQLClause.VALUE_PLACEHOLDER).reduce(
+					(total, part) -> total + ", " + part));
+			sql.append(")");
+		}
+		// Mixed directions are expanded: (a > ?) OR (a = ? AND b < ?) OR ...
+		else
+		{
+			sql.append("(");
+			for (int i = 0; i < this.order.size(); i++)
+			{
+				if (i > 0)
+					sql.append(" OR ");
+				sql.append("(");
+				for (int j = 0; j < i; j++)
+				{
+					sql.append(this.order.get(j).first().getColumnNameWithTable());
+					sql.append(" = ? AND ");
+				}
+				appendComparison(sql, this.order.get(i));
+				sql.append(")");
+			}
+			sql.append(")");
+		}
+		
+		return sql.toString();
+	}
+	
+	@Override
+	public ImmutableList<Value> getValues()
+	{
+		// Values are cast to the column data types
+		ImmutableList<Value> castKey = this.order.zip(this.key).map(p -> p.second().castTo(
+				p.first().first().getType()));
+		
+		if (this.order.size() <= 1 || usesSingleDirection())
+			return castKey;
+		else
+		{
+			// In the expanded form, each term repeats the preceding key values
+			ImmutableList<Value> values = ImmutableList.empty();
+			for (int i = 0; i < castKey.size(); i++)
+			{
+				for (int j = 0; j <= i; j++)
+				{
+					values = values.plus(castKey.get(j));
+				}
+			}
+			return values;
+		}
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	private boolean usesSingleDirection()
+	{
+		boolean firstAscending = this.order.head().second();
+		return this.order.forAll(p -> p.second() == firstAscending);
+	}
+	
+	private static void appendComparison(StringBuilder sql, Pair<Column, Boolean> columnOrder)
+	{
+		sql.append(columnOrder.first().getColumnNameWithTable());
+		sql.append(columnOrder.second() ? " > ?" : " < ?");
+	}
+}
@@ -0,0 +1,173 @@
+package utopia.vault.database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import utopia.flow.generics.Value;
+import utopia.vault.generics.Column;
+import utopia.vault.generics.IndexAllocationException;
+import utopia.vault.generics.IndexAllocator;
+import utopia.vault.generics.Table;
+
+/**
+ * This allocator reserves blocks of indices from a sequence table (hi-lo allocation). Each 
+ * thread reserves its own blocks so that most indices are handed out without any database 
+ * access. The sequence table should have the following structure:<br> 
+ * CREATE TABLE index_sequence (name VARCHAR(128) PRIMARY KEY NOT NULL, next_index BIGINT NOT NULL)<br> 
+ * A sequence row is created automatically for each table when first required. The sequence 
+ * starts after the largest index already used in the table.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class SequenceIndexAllocator implements IndexAllocator
+{
+	// ATTRIBUTES	------------------
+	
+	private final String databaseName, sequenceTableName;
+	private final int blockSize;
+	
+	// Table -> [next index, end index (exclusive)]
+	private final ThreadLocal<Map<Table, long[]>> blocks = ThreadLocal.withInitial(HashMap::new);
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new allocator
+	 * @param databaseName The name of the database that contains the sequence table
+	 * @param sequenceTableName The name of the sequence table
+	 * @param blockSize How many indices are reserved at once. Larger blocks mean less database 
+	 * access but leave larger gaps in the indices when the application is restarted.
+	 */
+	public SequenceIndexAllocator(String databaseName, String sequenceTableName, int blockSize)
+	{
+		if (blockSize <= 0)
+			throw new IllegalArgumentException("Block size must be positive");
+		
+		this.databaseName = databaseName;
+		this.sequenceTableName = sequenceTableName;
+		this.blockSize = blockSize;
+	}
+	
+	
+	// IMPLEMENTED METHODS	----------
+	
+	@Override
+	public Value allocateIndex(Table table) throws IndexAllocationException
+	{
+		Map<Table, long[]> threadBlocks = this.blocks.get();
+		long[] block = threadBlocks.get(table);
+		
+		// Reserves a new block when the previous one has been used
+		if (block == null || block[0] >= block[1])
+		{
+			block = reserveBlock(table);
+			threadBlocks.put(table, block);
+		}
+		
+		long index = block[0];
+		block[0] ++;
+		
+		return Value.Long(index).castTo(table.getPrimaryColumn().getType());
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	// Reservations use their own connection so that they are never rolled back with the
+	// transaction of the inserting client
+	@SuppressWarnings("resource")
+	private long[] reserveBlock(Table table) throws IndexAllocationException
+	{
+		String sequenceName = table.getDatabaseName() + "." + table.getName();
+		Database connection = new Database(this.databaseName);
+		
+		try
+		{
+			// Creates the sequence row if it didn't exist yet
+			if (advanceSequence(connection, sequenceName) == 0)
+			{
+				initialiseSequence(connection, sequenceName, table);
+				if (advanceSequence(connection, sequenceName) == 0)
+					throw new IndexAllocationException("Couldn't initialise index sequence " + sequenceName);
+			}
+			
+			// The sequence now points to the end of the reserved block
+			long end = readLastInsertId(connection);
+			return new long[] {end - this.blockSize, end};
+		}
+		catch (SQLException | DatabaseUnavailableException e)
+		{
+			throw new IndexAllocationException("Failed to reserve indices for table " + sequenceName, e);
+		}
+		finally
+		{
+			connection.closeConnection();
+		}
+	}
+	
+	private int advanceSequence(Database connection, String sequenceName) throws SQLException,
+			DatabaseUnavailableException
+	{
+		// LAST_INSERT_ID(expr) remembers the new value for this connection
+		PreparedStatement statement = null;
+		try
+		{
+			statement = connection.getPreparedStatement("UPDATE " + this.sequenceTableName +
+					" SET next_index = LAST_INSERT_ID(next_index + ?) WHERE name = ?");
+			statement.setLong(1, this.blockSize);
+			statement.setString(2, sequenceName);
+			
+			return statement.executeUpdate();
+		}
+		finally
+		{
+			Database.closeStatement(statement);
+		}
+	}
+	
+	private void initialiseSequence(Database connection, String sequenceName, Table table) throws
+			SQLException, DatabaseUnavailableException
+	{
+		Column primary = table.getPrimaryColumn();
+		PreparedStatement statement = null;
+		try
+		{
+			// The sequence starts after the existing rows. Another thread may have created the row already.
+			statement = connection.getPreparedStatement("INSERT IGNORE INTO " + this.sequenceTableName +
+					" (name, next_index) SELECT ?, COALESCE(MAX(" + primary.getColumnName() + "), 0) + 1 FROM " +
+					table.getDatabaseName() + "." + table.getName());
+			statement.setString(1, sequenceName);
+			
+			statement.executeUpdate();
+		}
+		finally
+		{
+			Database.closeStatement(statement);
+		}
+	}
+	
+	private static long readLastInsertId(Database connection) throws SQLException, DatabaseUnavailableException
+	{
+		PreparedStatement statement = null;
+		ResultSet results = null;
+		try
+		{
+			statement = connection.getPreparedStatement("SELECT LAST_INSERT_ID()");
+			results = statement.executeQuery();
+			
+			if (results.next())
+				return results.getLong(1);
+			else
+				throw new SQLException("LAST_INSERT_ID() didn't return a value");
+		}
+		finally
+		{
+			Database.closeResults(results);
+			Database.closeStatement(statement);
+		}
+	}
+}
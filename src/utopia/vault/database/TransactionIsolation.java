@@ -0,0 +1,60 @@
+package utopia.vault.database;
+
+import java.sql.Connection;
+
+/**
+ * These are the isolation levels a transaction can use
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ * @see ConnectionManager#inTransaction(TransactionIsolation, utopia.flow.function.ThrowingFunction)
+ */
+public enum TransactionIsolation
+{
+	/**
+	 * The connection's default isolation level is used (REPEATABLE READ in MariaDB unless 
+	 * configured otherwise)
+	 */
+	DEFAULT(Connection.TRANSACTION_NONE),
+	/**
+	 * The transaction may read uncommitted changes of other transactions
+	 */
+	READ_UNCOMMITTED(Connection.TRANSACTION_READ_UNCOMMITTED),
+	/**
+	 * Each read sees the latest committed data
+	 */
+	READ_COMMITTED(Connection.TRANSACTION_READ_COMMITTED),
+	/**
+	 * Reads see a consistent snapshot taken at the first read of the transaction
+	 */
+	REPEATABLE_READ(Connection.TRANSACTION_REPEATABLE_READ),
+	/**
+	 * Transactions behave as if they were run one after another. Plain reads lock the rows 
+	 * they read.
+	 */
+	SERIALIZABLE(Connection.TRANSACTION_SERIALIZABLE);
+	
+	
+	// ATTRIBUTES	-----------------
+	
+	private final int jdbcLevel;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	private TransactionIsolation(int jdbcLevel)
+	{
+		this.jdbcLevel = jdbcLevel;
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * @return The JDBC constant that represents this isolation level. 
+	 * {@link Connection#TRANSACTION_NONE} for the default level.
+	 */
+	public int getJdbcLevel()
+	{
+		return this.jdbcLevel;
+	}
+}
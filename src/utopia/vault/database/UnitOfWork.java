@@ -0,0 +1,309 @@
+package utopia.vault.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import utopia.flow.generics.Value;
+import utopia.flow.structure.ImmutableList;
+import utopia.flow.structure.Option;
+import utopia.flow.structure.Try;
+import utopia.vault.generics.Column;
+import utopia.vault.generics.ColumnVariable;
+import utopia.vault.generics.Table;
+import utopia.vault.generics.TableModel;
+
+/**
+ * A unit of work collects model inserts, updates and deletes and writes them all at once in 
+ * a single transaction. The writes are ordered so that referenced tables are inserted before 
+ * the tables that reference them (and deleted after them). Writes to the same table are sent 
+ * as JDBC batches.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class UnitOfWork
+{
+	// ATTRIBUTES	------------------
+	
+	private final ConnectionManager connectionManager;
+	
+	private List<TableModel> newModels = new ArrayList<>();
+	private List<TableModel> dirtyModels = new ArrayList<>();
+	private List<TableModel> deletedModels = new ArrayList<>();
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new empty unit of work
+	 * @param connectionManager The connection manager that provides the connection used 
+	 * when the work is committed
+	 */
+	public UnitOfWork(ConnectionManager connectionManager)
+	{
+		this.connectionManager = connectionManager;
+	}
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * @return Whether there are no registered writes in this unit of work
+	 */
+	public boolean isEmpty()
+	{
+		return this.newModels.isEmpty() && this.dirtyModels.isEmpty() && this.deletedModels.isEmpty();
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	/**
+	 * Registers a model that will be inserted into the database
+	 * @param model A new model
+	 */
+	public void registerNew(TableModel model)
+	{
+		this.newModels.add(model);
+	}
+	
+	/**
+	 * Registers a model whose modified attributes will be updated into the database
+	 * @param model A modified model. The model must have an index.
+	 */
+	public void registerDirty(TableModel model)
+	{
+		if (!model.hasIndex())
+			throw new IllegalArgumentException("Only models with an index can be updated");
+		if (!containsModel(this.newModels, model) && !containsModel(this.dirtyModels, model))
+			this.dirtyModels.add(model);
+	}
+	
+	/**
+	 * Registers a model that will be deleted from the database
+	 * @param model A model to delete. The model must have an index.
+	 */
+	public void registerDeleted(TableModel model)
+	{
+		if (!model.hasIndex())
+			throw new IllegalArgumentException("Only models with an index can be deleted");
+		this.dirtyModels.removeIf(m -> m == model);
+		if (!containsModel(this.deletedModels, model))
+			this.deletedModels.add(model);
+	}
+	
+	/**
+	 * Writes all registered changes into the database in a single transaction. If any of the 
+	 * writes fails, the whole transaction is rolled back, the registered changes are kept and 
+	 * the models are returned to their state before the attempt (the assigned indices are 
+	 * cleared and the assigned or raised versions are restored), so that the commit can be retried.
+	 * @throws DatabaseException If a write failed
+	 * @throws DatabaseUnavailableException If the database couldn't be accessed
+	 */
+	public void commit() throws DatabaseException, DatabaseUnavailableException
+	{
+		if (isEmpty())
+			return;
+		
+		// The new models that receive their index during the insert
+		List<TableModel> unindexed = new ArrayList<>();
+		// The inserts set the initial versions of the new models
+		List<ModelState> newStates = new ArrayList<>(this.newModels.size());
+		for (TableModel model : this.newModels)
+		{
+			if (!model.hasIndex())
+				unindexed.add(model);
+			newStates.add(new ModelState(model));
+		}
+		// The updates raise the model versions and mark the attributes clean
+		List<ModelState> dirtyStates = new ArrayList<>(this.dirtyModels.size());
+		for (TableModel model : this.dirtyModels)
+		{
+			dirtyStates.add(new ModelState(model));
+		}
+		
+		Try<Void> result = this.connectionManager.inTransaction(TransactionIsolation.DEFAULT, db -> 
+		{
+			write(db);
+			return null;
+		});
+		
+		Option<Exception> failure = result.failure();
+		if (failure.isDefined())
+		{
+			// The rolled back changes need to be written again on the next attempt
+			unindexed.forEach(model -> model.setIndex(Value.NullValue( 
+					model.getTable().getPrimaryColumn().getType())));
+			newStates.forEach(state -> 
+			{
+				state.restore();
+				state.model.markDirty();
+			});
+			dirtyStates.forEach(ModelState::restore);
+			
+			Exception e = failure.get();
+			if (e instanceof DatabaseException)
+				throw (DatabaseException) e;
+			else if (e instanceof DatabaseUnavailableException)
+				throw (DatabaseUnavailableException) e;
+			else if (e instanceof SQLException)
+				throw new DatabaseException(e);
+			else if (e instanceof RuntimeException)
+				throw (RuntimeException) e;
+			else
+				throw new DatabaseException(e);
+		}
+		
+		this.newModels = new ArrayList<>();
+		this.dirtyModels = new ArrayList<>();
+		this.deletedModels = new ArrayList<>();
+	}
+	
+	/**
+	 * Discards all registered changes
+	 */
+	public void clear()
+	{
+		this.newModels.clear();
+		this.dirtyModels.clear();
+		this.deletedModels.clear();
+	}
+	
+	private void write(Database db) throws DatabaseException, DatabaseUnavailableException
+	{
+		Map<Table, List<TableModel>> inserts = groupByTable(this.newModels);
+		Map<Table, List<TableModel>> updates = groupByTable(this.dirtyModels);
+		Map<Table, List<TableModel>> deletes = groupByTable(this.deletedModels);
+		
+		List<Table> tables = new ArrayList<>(inserts.keySet());
+		for (Table table : updates.keySet())
+		{
+			if (!tables.contains(table))
+				tables.add(table);
+		}
+		for (Table table : deletes.keySet())
+		{
+			if (!tables.contains(table))
+				tables.add(table);
+		}
+		List<Table> order = orderByReferences(tables);
+		
+		// Referenced rows are inserted first
+		for (Table table : order)
+		{
+			if (inserts.containsKey(table))
+				Database.insertBatch(ImmutableList.of(inserts.get(table)), db);
+		}
+		for (Table table : order)
+		{
+			if (updates.containsKey(table))
+				Database.updateBatch(ImmutableList.of(updates.get(table)), db);
+		}
+		// Referencing rows are deleted first
+		for (int i = order.size() - 1; i >= 0; i--)
+		{
+			Table table = order.get(i);
+			if (deletes.containsKey(table))
+			{
+				ImmutableList<Value> indices = ImmutableList.of(deletes.get(table)).map(m -> m.getIndex());
+				Database.delete(table, Option.some(new InCondition(table.getPrimaryColumn(), indices)), db);
+			}
+		}
+	}
+	
+	private static Map<Table, List<TableModel>> groupByTable(List<TableModel> models)
+	{
+		Map<Table, List<TableModel>> groups = new LinkedHashMap<>();
+		for (TableModel model : models)
+		{
+			groups.computeIfAbsent(model.getTable(), t -> new ArrayList<>()).add(model);
+		}
+		return groups;
+	}
+	
+	// Orders the tables so that each table comes after the tables it references. Circular
+	// references are written in registration order.
+	private static List<Table> orderByReferences(List<Table> tables)
+	{
+		List<Table> remaining = new ArrayList<>(tables);
+		List<Table> ordered = new ArrayList<>(tables.size());
+		
+		while (!remaining.isEmpty())
+		{
+			Table next = remaining.get(0);
+			for (Table table : remaining)
+			{
+				boolean referencesRemaining = false;
+				for (Table other : remaining)
+				{
+					if (other != table && table.references(other))
+					{
+						referencesRemaining = true;
+						break;
+					}
+				}
+				
+				if (!referencesRemaining)
+				{
+					next = table;
+					break;
+				}
+			}
+			
+			remaining.remove(next);
+			ordered.add(next);
+		}
+		
+		return ordered;
+	}
+	
+	private static boolean containsModel(List<TableModel> models, TableModel model)
+	{
+		// Models are compared by identity since their attributes may change
+		for (TableModel existing : models)
+		{
+			if (existing == model)
+				return true;
+		}
+		return false;
+	}
+	
+	
+	// NESTED CLASSES	--------------
+	
+	private static class ModelState
+	{
+		// ATTRIBUTES	--------------
+		
+		private final TableModel model;
+		private final ImmutableList<ColumnVariable> dirtyAttributes;
+		private final Option<Value> version;
+		
+		
+		// CONSTRUCTOR	--------------
+		
+		public ModelState(TableModel model)
+		{
+			this.model = model;
+			this.dirtyAttributes = model.getDirtyAttributes();
+			this.version = model.getTable().getVersionColumn().map(column -> model.getAttribute(column).getValue());
+		}
+		
+		
+		// OTHER METHODS	----------
+		
+		// Only the attributes that were modified before the attempt are written on the next one
+		public void restore()
+		{
+			this.version.forEach(v -> 
+			{
+				Column column = this.model.getTable().getVersionColumn().get();
+				this.model.getAttribute(column).setValue(v);
+			});
+			this.model.markClean();
+			this.model.markDirty(this.dirtyAttributes);
+		}
+	}
+}
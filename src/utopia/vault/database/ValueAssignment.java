@@ -1,6 +1,7 @@
 package utopia.vault.database;
 
 import java.util.Collection;
+import java.util.regex.Matcher;
 
 import utopia.flow.generics.Value;
 import utopia.flow.structure.ImmutableList;
@@ -12,7 +13,8 @@ import utopia.vault.generics.Table;
 
 /**
  * Set is used for parsing a value set in an update sql. Set can assign database values to 
- * match provided values or values of other columns.
+ * match provided values, values of other columns or the results of sql expressions, such as 
+ * 'hits = hits + ?'.
  * @author Mikko Hilpinen
  * @since 2.7.2016
  */
@@ -91,6 +93,20 @@ public class ValueAssignment implements PreparedSQLClause
 		this.removeNulls = noNulls;
 		this.assignments = assignments;
 	}
+	
+	/**
+	 * Creates a new set clause that increases a column's value. Using this clause in an update 
+	 * replaces a separate read and write.
+	 * @param column The column that is incremented
+	 * @param amount The amount the column's value is increased by
+	 * @return A set clause like 'hits = hits + ?'
+	 */
+	public static ValueAssignment createIncrement(Column column, Value amount)
+	{
+		ValueAssignment set = new ValueAssignment(ImmutableList.empty(), false);
+		set.appendIncrement(column, amount);
+		return set;
+	}
 
 	
 	// IMPLEMENTED METHODS	----------
@@ -104,7 +120,7 @@ public class ValueAssignment implements PreparedSQLClause
 	@Override
 	public ImmutableList<Value> getValues()
 	{
-		return this.assignments.flatMap(a -> a.getValue());
+		return this.assignments.flatMap(a -> a.getValues());
 	}
 	
 	
@@ -171,6 +187,100 @@ public class ValueAssignment implements PreparedSQLClause
 		this.assignments = this.assignments.plus(setColumns.map(pair -> new Assignment(pair.first(), pair.second())));
 	}
 	
+	/**
+	 * Adds an assignment that sets the column's value based on an arithmetic operation 
+	 * between another column and a value. For example: 'hits = hits + ?'
+	 * @param target The column that will be affected by the set
+	 * @param source The column the first operand is read from (may be the target column)
+	 * @param operator The arithmetic operator used
+	 * @param value The second operand
+	 */
+	public void appendArithmetic(Column target, Column source, ArithmeticOperator operator, Value value)
+	{
+		this.assignments = this.assignments.plus(new Assignment(target, source.getColumnNameWithTable() + 
+				operator + VALUE_PLACEHOLDER, ImmutableList.withValue(value.castTo(source.getType()))));
+	}
+	
+	/**
+	 * Adds an assignment that sets the column's value based on an arithmetic operation 
+	 * between two columns. For example: 'total = price * amount'
+	 * @param target The column that will be affected by the set
+	 * @param first The column the first operand is read from
+	 * @param operator The arithmetic operator used
+	 * @param second The column the second operand is read from
+	 */
+	public void appendArithmetic(Column target, Column first, ArithmeticOperator operator, Column second)
+	{
+		this.assignments = this.assignments.plus(new Assignment(target, first.getColumnNameWithTable() + 
+				operator + second.getColumnNameWithTable(), ImmutableList.empty()));
+	}
+	
+	/**
+	 * Adds an assignment that increases the column's current value. For example: 'hits = hits + ?'
+	 * @param column The column that is incremented
+	 * @param amount The amount the column's value is increased by
+	 */
+	public void appendIncrement(Column column, Value amount)
+	{
+		appendArithmetic(column, column, ArithmeticOperator.PLUS, amount);
+	}
+	
+	/**
+	 * Adds an assignment that decreases the column's current value. For example: 'stock = stock - ?'
+	 * @param column The column that is decremented
+	 * @param amount The amount the column's value is decreased by
+	 */
+	public void appendDecrement(Column column, Value amount)
+	{
+		appendArithmetic(column, column, ArithmeticOperator.MINUS, amount);
+	}
+	
+	/**
+	 * Adds an assignment that sets the column's value to the larger of the current value and 
+	 * the provided value. For example: 'max_score = GREATEST(max_score, ?)'
+	 * @param column The target column
+	 * @param value The value compared with the column's current value
+	 */
+	public void appendGreatest(Column column, Value value)
+	{
+		appendFunction(column, "GREATEST", value);
+	}
+	
+	/**
+	 * Adds an assignment that sets the column's value to the smaller of the current value and 
+	 * the provided value. For example: 'min_price = LEAST(min_price, ?)'
+	 * @param column The target column
+	 * @param value The value compared with the column's current value
+	 */
+	public void appendLeast(Column column, Value value)
+	{
+		appendFunction(column, "LEAST", value);
+	}
+	
+	/**
+	 * Adds an assignment that sets the column's value only if it is currently null. 
+	 * For example: 'first_seen = COALESCE(first_seen, ?)'
+	 * @param column The target column
+	 * @param value The value assigned to the column when it doesn't have a value yet
+	 */
+	public void appendCoalesce(Column column, Value value)
+	{
+		appendFunction(column, "COALESCE", value);
+	}
+	
+	/**
+	 * Adds an assignment that sets the column's value to the result of an sql expression
+	 * @param target The column that will be affected by the set
+	 * @param expression The sql expression on the right side of the assignment. The values 
+	 * are marked with '?'. For example: 'IF(table.column > ?, ?, table.column)'
+	 * @param values The values used in the expression. Must have a value for each '?' in the 
+	 * expression, in the same order.
+	 */
+	public void appendExpression(Column target, String expression, ImmutableList<Value> values)
+	{
+		this.assignments = this.assignments.plus(new Assignment(target, expression, values));
+	}
+	
 	/**
 	 * Creates a set clause based on this assignment. A whitespace is added before the string. 
 	 * An example clause may be: " SET table1.column1=?, table1.column2=?"
@@ -303,6 +413,13 @@ public class ValueAssignment implements PreparedSQLClause
 		return toSql(true);
 	}
 	
+	private void appendFunction(Column column, String function, Value value)
+	{
+		this.assignments = this.assignments.plus(new Assignment(column, function + "(" + 
+				column.getColumnNameWithTable() + ", " + VALUE_PLACEHOLDER + ")", 
+				ImmutableList.withValue(value.castTo(column.getType()))));
+	}
+	
 	private String toSql(boolean debugVersion)
 	{
 		StringBuilder sql = new StringBuilder();
@@ -329,8 +446,10 @@ public class ValueAssignment implements PreparedSQLClause
 		// ATTRIBUTES	-------------------
 		
 		private Column targetColumn;
-		private Option<Column> sourceColumn = Option.none();
-		private Option<Value> value = Option.none();
+		// The right side of the assignment. Values are marked with '?'
+		private String expression;
+		private ImmutableList<Value> values;
+		private boolean assignsValue;
 		
 		
 		// CONSTRUCTOR	-------------------
@@ -338,19 +457,30 @@ public class ValueAssignment implements PreparedSQLClause
 		public Assignment(Column targetColumn, Column sourceColumn)
 		{
 			this.targetColumn = targetColumn;
-			this.sourceColumn = Option.some(sourceColumn);
+			this.expression = sourceColumn.getColumnNameWithTable();
+			this.values = ImmutableList.empty();
+			this.assignsValue = false;
 		}
 		
 		public Assignment(Column targetColumn, Value value)
 		{
 			this.targetColumn = targetColumn;
-			this.value = Option.some(value);
+			this.expression = VALUE_PLACEHOLDER;
+			this.values = ImmutableList.withValue(value);
+			this.assignsValue = true;
 		}
 		
 		public Assignment(ColumnVariable var)
 		{
-			this.targetColumn = var.getColumn();
-			this.value = Option.some(var.getValue());
+			this(var.getColumn(), var.getValue());
+		}
+		
+		public Assignment(Column targetColumn, String expression, ImmutableList<Value> values)
+		{
+			this.targetColumn = targetColumn;
+			this.expression = expression;
+			this.values = values;
+			this.assignsValue = false;
 		}
 		
 		// IMPLEMENTED METHODS	----------
@@ -369,9 +499,21 @@ public class ValueAssignment implements PreparedSQLClause
 			return this.targetColumn;
 		}
 		
+		/**
+		 * @return The value directly assigned to the column. None if the column value is 
+		 * assigned from another column or an expression
+		 */
 		public Option<Value> getValue()
 		{
-			return this.value;
+			if (this.assignsValue)
+				return this.values.headOption();
+			else
+				return Option.none();
+		}
+		
+		public ImmutableList<Value> getValues()
+		{
+			return this.values;
 		}
 		
 		
@@ -379,12 +521,19 @@ public class ValueAssignment implements PreparedSQLClause
 		
 		public String getSecondPartSQL(boolean debugVersion)
 		{
-			if (getValue().isEmpty())
-				return this.sourceColumn.get().getColumnNameWithTable();
-			else if (debugVersion)
-				return this.value.get().getDescription();
+			if (!debugVersion || this.values.isEmpty())
+				return this.expression;
 			else
-				return "?";
+			{
+				// The debug version shows values in place of the placeholders
+				String sql = this.expression;
+				for (Value value : this.values)
+				{
+					sql = sql.replaceFirst("\\" + VALUE_PLACEHOLDER, 
+							Matcher.quoteReplacement(value.getDescription()));
+				}
+				return sql;
+			}
 		}
 		
 		public String toSQL(boolean debugVersion)
@@ -397,4 +546,54 @@ public class ValueAssignment implements PreparedSQLClause
 			return s.toString();
 		}
 	}
+	
+	
+	// ENUMS	---------------------------
+	
+	/**
+	 * These are the arithmetic operators that can be used in value assignments
+	 * @author Mikko Hilpinen
+	 * @since 18.10.2026
+	 */
+	public static enum ArithmeticOperator
+	{
+		/**
+		 * Adds the operands together
+		 */
+		PLUS(" + "),
+		/**
+		 * Subtracts the second operand from the first
+		 */
+		MINUS(" - "),
+		/**
+		 * Multiplies the operands
+		 */
+		MULTIPLY(" * "),
+		/**
+		 * Divides the first operand with the second
+		 */
+		DIVIDE(" / ");
+		
+		
+		// ATTRIBUTES	-------------
+		
+		private final String sql;
+		
+		
+		// CONSTRUCTOR	-------------
+		
+		private ArithmeticOperator(String sql)
+		{
+			this.sql = sql;
+		}
+		
+		
+		// IMPLEMENTED METHODS	-----
+		
+		@Override
+		public String toString()
+		{
+			return this.sql;
+		}
+	}
 }
@@ -0,0 +1,49 @@
+package utopia.vault.database;
+
+import utopia.flow.generics.Value;
+import utopia.flow.structure.Option;
+import utopia.vault.generics.Table;
+
+/**
+ * These exceptions are thrown when an optimistically locked update fails because the row was 
+ * modified (or deleted) after the model was read
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class VersionConflictException extends DatabaseException
+{
+	// ATTRIBUTES	-------------------
+	
+	private static final long serialVersionUID = 2735021547623905194L;
+	
+	private final Value expectedVersion;
+	
+	
+	// CONSTRUCTOR	-------------------
+	
+	/**
+	 * Creates a new exception
+	 * @param table The table that was being updated
+	 * @param where The condition used in the update, including the version check
+	 * @param set The values that were being assigned
+	 * @param expectedVersion The row version the update expected
+	 */
+	public VersionConflictException(Table table, Option<Condition> where, ValueAssignment set,
+			Value expectedVersion)
+	{
+		super("Row in " + table + " was modified concurrently. Expected version " +
+				expectedVersion.getDescription() + " no longer exists.", null, table, where, set, null);
+		this.expectedVersion = expectedVersion;
+	}
+	
+	
+	// ACCESSORS	-------------------
+	
+	/**
+	 * @return The row version the failed update expected
+	 */
+	public Value getExpectedVersion()
+	{
+		return this.expectedVersion;
+	}
+}
@@ -0,0 +1,222 @@
+package utopia.vault.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import utopia.flow.structure.Option;
+
+/**
+ * A bulkhead limits the number of concurrent connection leases of each workload class and 
+ * admits the waiting clients in priority order. Clients without a workload class are always 
+ * admitted immediately, but their leases count against the total capacity. Their leases are 
+ * counted without locking, so that the bulkhead doesn't slow down the clients that don't use 
+ * workload classes.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+class WorkloadBulkhead
+{
+	// ATTRIBUTES	------------------
+	
+	private final int capacity;
+	
+	private final AtomicInteger unclassifiedActive = new AtomicInteger();
+	// The fields below are guarded by this bulkhead's monitor
+	private final Map<WorkloadClass, Integer> active = new HashMap<>();
+	private int classifiedActive = 0;
+	private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+	// The number of waiters, readable without the monitor
+	private volatile int waiterCount = 0;
+	private long nextSequence = 0;
+	private boolean shutDown = false;
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new bulkhead
+	 * @param capacity The maximum number of concurrent leases
+	 */
+	WorkloadBulkhead(int capacity)
+	{
+		this.capacity = capacity;
+	}
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * @param workload A workload class
+	 * @return The number of leases currently held by the clients of the class
+	 */
+	synchronized int getActive(WorkloadClass workload)
+	{
+		return this.active.getOrDefault(workload, 0);
+	}
+	
+	/**
+	 * @return The number of clients waiting to be admitted
+	 */
+	int getWaiting()
+	{
+		return this.waiterCount;
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	/**
+	 * Admits a client, blocking until the client's workload class has room. The wait is not 
+	 * interrupted, but the thread's interrupt status is restored afterwards.
+	 * @param workload The workload class of the client. None if the client isn't limited.
+	 * @throws DatabaseUnavailableException If the bulkhead was shut down before the client 
+	 * was admitted
+	 */
+	void acquire(Option<WorkloadClass> workload) throws DatabaseUnavailableException
+	{
+		if (workload.isEmpty())
+			this.unclassifiedActive.incrementAndGet();
+		else
+			acquire(workload.get());
+	}
+	
+	/**
+	 * Releases a client's lease and admits the next waiting clients
+	 * @param workload The workload class of the client
+	 */
+	void release(Option<WorkloadClass> workload)
+	{
+		if (workload.isEmpty())
+		{
+			this.unclassifiedActive.decrementAndGet();
+			// The waiter count is written before the waiters read the unclassified count, 
+			// so the released capacity can't go unnoticed
+			if (this.waiterCount > 0)
+				release((WorkloadClass) null);
+		}
+		else
+			release(workload.get());
+	}
+	
+	/**
+	 * Shuts down this bulkhead. The clients waiting to be admitted are woken up and fail. 
+	 * Clients without a workload class are still admitted.
+	 */
+	synchronized void shutdown()
+	{
+		this.shutDown = true;
+		notifyAll();
+	}
+	
+	private synchronized void acquire(WorkloadClass workload) throws DatabaseUnavailableException
+	{
+		if (this.shutDown)
+			throw new DatabaseUnavailableException("The connection manager has been shut down");
+		
+		Waiter waiter = new Waiter(workload, this.nextSequence++);
+		this.waiters.add(waiter);
+		this.waiterCount = this.waiters.size();
+		admitWaiters();
+		
+		boolean interrupted = false;
+		while (!waiter.admitted)
+		{
+			if (this.shutDown)
+			{
+				this.waiters.remove(waiter);
+				this.waiterCount = this.waiters.size();
+				if (interrupted)
+					Thread.currentThread().interrupt();
+				throw new DatabaseUnavailableException("The connection manager has been shut down");
+			}
+			
+			try
+			{
+				wait();
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+	
+	// A null workload only admits the waiters
+	private synchronized void release(WorkloadClass workload)
+	{
+		if (workload != null)
+		{
+			this.classifiedActive --;
+			this.active.merge(workload, -1, Integer::sum);
+		}
+		admitWaiters();
+	}
+	
+	// Admits the waiters in priority order. Waiters whose class is at its limit are skipped.
+	private void admitWaiters()
+	{
+		if (this.waiters.isEmpty())
+			return;
+		
+		List<Waiter> skipped = new ArrayList<>();
+		boolean admitted = false;
+		while (this.classifiedActive + this.unclassifiedActive.get() < this.capacity && !this.waiters.isEmpty())
+		{
+			Waiter next = this.waiters.poll();
+			WorkloadClass workload = next.workload;
+			if (getActive(workload) < workload.getLimit(this.capacity))
+			{
+				next.admitted = true;
+				admitted = true;
+				this.classifiedActive ++;
+				this.active.merge(workload, 1, Integer::sum);
+			}
+			else
+				skipped.add(next);
+		}
+		this.waiters.addAll(skipped);
+		this.waiterCount = this.waiters.size();
+		
+		if (admitted)
+			notifyAll();
+	}
+	
+	
+	// NESTED CLASSES	--------------
+	
+	private static class Waiter implements Comparable<Waiter>
+	{
+		// ATTRIBUTES	--------------
+		
+		private final WorkloadClass workload;
+		private final long sequence;
+		private boolean admitted = false;
+		
+		
+		// CONSTRUCTOR	--------------
+		
+		public Waiter(WorkloadClass workload, long sequence)
+		{
+			this.workload = workload;
+			this.sequence = sequence;
+		}
+		
+		
+		// IMPLEMENTED METHODS	------
+		
+		@Override
+		public int compareTo(Waiter other)
+		{
+			// Higher priority first, then in arrival order
+			int byPriority = Integer.compare(other.workload.getPriority(), this.workload.getPriority());
+			return byPriority != 0 ? byPriority : Long.compare(this.sequence, other.sequence);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package utopia.vault.database;
+
+/**
+ * Workload classes separate different kinds of database clients (e.g. interactive requests 
+ * and batch jobs) from each other. Each class may only use a limited share of a connection 
+ * manager's capacity, so that a single class can't exhaust the whole pool. When the clients 
+ * need to wait for a connection, the clients of higher priority classes are served first.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ * @see ConnectionManager#withWorkload(WorkloadClass, utopia.flow.function.ThrowingSupplier)
+ */
+public class WorkloadClass
+{
+	// ATTRIBUTES	------------------
+	
+	/**
+	 * A workload class for user-facing requests that should be served as fast as possible
+	 */
+	public static final WorkloadClass INTERACTIVE = new WorkloadClass("interactive", 0.8, 10);
+	/**
+	 * A workload class for background jobs like imports and reports
+	 */
+	public static final WorkloadClass BATCH = new WorkloadClass("batch", 0.5, 0);
+	
+	private final String name;
+	private final double maxShare;
+	private final int priority;
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new workload class
+	 * @param name The name of the class
+	 * @param maxShare The portion (0, 1) of a connection manager's capacity the clients of this 
+	 * class may use at the same time. The class is always allowed at least one connection 
+	 * and never the whole pool.
+	 * @param priority The priority of the class. The waiting clients of classes with higher 
+	 * priority receive their connections first.
+	 */
+	public WorkloadClass(String name, double maxShare, int priority)
+	{
+		if (maxShare <= 0 || maxShare >= 1)
+			throw new IllegalArgumentException("The max share of a workload class must be between 0 and 1");
+		
+		this.name = name;
+		this.maxShare = maxShare;
+		this.priority = priority;
+	}
+	
+	
+	// IMPLEMENTED METHODS	----------
+	
+	@Override
+	public String toString()
+	{
+		return this.name;
+	}
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * @return The name of the class
+	 */
+	public String getName()
+	{
+		return this.name;
+	}
+	
+	/**
+	 * @return The portion (0, 1) of a connection manager's capacity the clients of this class 
+	 * may use at the same time
+	 */
+	public double getMaxShare()
+	{
+		return this.maxShare;
+	}
+	
+	/**
+	 * @return The priority of the class. Higher priority classes are served first.
+	 */
+	public int getPriority()
+	{
+		return this.priority;
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	/**
+	 * @param capacity The maximum number of concurrent leases in a connection manager
+	 * @return The maximum number of concurrent leases this class may hold in the manager
+	 */
+	public int getLimit(int capacity)
+	{
+		if (capacity <= 1)
+			return capacity;
+		else
+			return Math.max(1, Math.min(capacity - 1, (int) Math.floor(capacity * this.maxShare)));
+	}
+}
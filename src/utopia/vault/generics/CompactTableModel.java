@@ -0,0 +1,246 @@
+package utopia.vault.generics;
+
+import java.util.Arrays;
+
+import utopia.flow.generics.Value;
+import utopia.flow.structure.ImmutableList;
+import utopia.flow.structure.ListBuilder;
+import utopia.flow.structure.Option;
+import utopia.vault.generics.Table.NoSuchColumnException;
+
+/**
+ * This model stores the attribute values of a single table row in an array indexed by column 
+ * ordinals. The column information is shared through the table's {@link TableSchema}, which 
+ * makes this model much lighter than a {@link TableModel} and suitable for caching large 
+ * numbers of rows. The attributes are presented as column variables when requested.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class CompactTableModel implements IndexedModel
+{
+	// ATTRIBUTES	------------------
+	
+	// Marks the attributes that haven't been specified (null marks a null value)
+	private static final Object UNSET = new Object();
+	
+	private final TableSchema schema;
+	private final Object[] values;
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new empty model
+	 * @param table The table the model uses
+	 */
+	public CompactTableModel(Table table)
+	{
+		this.schema = table.getSchema();
+		this.values = new Object[this.schema.getColumnCount()];
+		Arrays.fill(this.values, UNSET);
+	}
+	
+	/**
+	 * Creates a new model with existing attributes
+	 * @param table The table the model uses
+	 * @param attributes The attributes of the model, for example a row read from the 
+	 * database. Attributes of other tables are ignored.
+	 */
+	public CompactTableModel(Table table, ImmutableList<? extends ColumnVariable> attributes)
+	{
+		this(table);
+		for (ColumnVariable attribute : attributes)
+		{
+			if (table.equals(attribute.getColumn().getTable()))
+				set(attribute.getColumn(), attribute.getValue());
+		}
+	}
+	
+	/**
+	 * Creates a compact copy of a table model
+	 * @param model The model that is copied
+	 */
+	public CompactTableModel(TableModel model)
+	{
+		this(model.getTable(), model.getAttributes());
+	}
+	
+	
+	// IMPLEMENTED METHODS	----------
+	
+	@Override
+	public Option<Value> getIndexOption()
+	{
+		if (getTable().findPrimaryColumn().isEmpty())
+			return Option.none();
+		else
+			return find(this.schema.getPrimaryOrdinal());
+	}
+	
+	@Override
+	public void setIndex(Value index) throws NoSuchColumnException
+	{
+		set(this.schema.getPrimaryOrdinal(), index);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return getAttributes().toString();
+	}
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * @return The database table the model uses
+	 */
+	public Table getTable()
+	{
+		return this.schema.getTable();
+	}
+	
+	/**
+	 * @return The schema that defines the ordinals used by this model
+	 */
+	public TableSchema getSchema()
+	{
+		return this.schema;
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	/**
+	 * Finds an attribute value
+	 * @param ordinal The ordinal of the attribute's column
+	 * @return The attribute value. None if the attribute hasn't been specified.
+	 */
+	public Option<Value> find(int ordinal)
+	{
+		Object value = this.values[ordinal];
+		if (value == UNSET)
+			return Option.none();
+		else
+			return Option.some(new Value(value, this.schema.getColumn(ordinal).getType()));
+	}
+	
+	/**
+	 * Finds an attribute value
+	 * @param attributeName The name of the attribute (case-insensitive)
+	 * @return The attribute value. None if the table doesn't have such a column or if the 
+	 * attribute hasn't been specified.
+	 */
+	public Option<Value> find(String attributeName)
+	{
+		return this.schema.findOrdinal(attributeName).flatMap(this::find);
+	}
+	
+	/**
+	 * Finds an attribute value
+	 * @param attributeName The name of the attribute (case-insensitive)
+	 * @return The attribute value. The column's default value if the attribute hasn't been 
+	 * specified.
+	 * @throws NoSuchColumnException If the table doesn't have such a column
+	 */
+	public Value get(String attributeName) throws NoSuchColumnException
+	{
+		int ordinal = this.schema.getOrdinal(attributeName);
+		return find(ordinal).getOrElse(() -> this.schema.getColumn(ordinal).getDefaultValue());
+	}
+	
+	/**
+	 * Finds an attribute value
+	 * @param column The column associated with the attribute
+	 * @return The attribute value. The column's default value if the attribute hasn't been 
+	 * specified.
+	 * @throws NoSuchColumnException If the column isn't part of this model's table
+	 */
+	public Value get(Column column) throws NoSuchColumnException
+	{
+		return find(this.schema.getOrdinal(column)).getOrElse(() -> column.getDefaultValue());
+	}
+	
+	/**
+	 * Changes an attribute value. The value is cast to the column's data type.
+	 * @param ordinal The ordinal of the attribute's column
+	 * @param value The new value of the attribute
+	 */
+	public void set(int ordinal, Value value)
+	{
+		this.values[ordinal] = value.isNull() ? null : 
+				value.castTo(this.schema.getColumn(ordinal).getType()).getObjectValue();
+	}
+	
+	/**
+	 * Changes an attribute value. The value is cast to the column's data type.
+	 * @param attributeName The name of the attribute (case-insensitive)
+	 * @param value The new value of the attribute
+	 * @throws NoSuchColumnException If the table doesn't have such a column
+	 */
+	public void set(String attributeName, Value value) throws NoSuchColumnException
+	{
+		set(this.schema.getOrdinal(attributeName), value);
+	}
+	
+	/**
+	 * Changes an attribute value. The value is cast to the column's data type.
+	 * @param column The column associated with the attribute
+	 * @param value The new value of the attribute
+	 * @throws NoSuchColumnException If the column isn't part of this model's table
+	 */
+	public void set(Column column, Value value) throws NoSuchColumnException
+	{
+		set(this.schema.getOrdinal(column), value);
+	}
+	
+	/**
+	 * Removes an attribute from the model
+	 * @param attributeName The name of the attribute (case-insensitive)
+	 */
+	public void remove(String attributeName)
+	{
+		this.schema.findOrdinal(attributeName).forEach(ordinal -> this.values[ordinal] = UNSET);
+	}
+	
+	/**
+	 * @param attributeName The name of an attribute (case-insensitive)
+	 * @return Whether the model has a value for the attribute
+	 */
+	public boolean contains(String attributeName)
+	{
+		return this.schema.findOrdinal(attributeName).exists(ordinal -> this.values[ordinal] != UNSET);
+	}
+	
+	/**
+	 * @return Whether the model has a non-null index
+	 */
+	public boolean hasIndex()
+	{
+		return getIndexOption().exists(index -> !index.isNull());
+	}
+	
+	/**
+	 * @return The specified attributes of this model. The variables are generated on each 
+	 * call, so modifying them won't affect this model.
+	 */
+	public ImmutableList<ColumnVariable> getAttributes()
+	{
+		ListBuilder<ColumnVariable> buffer = new ListBuilder<>();
+		for (int i = 0; i < this.values.length; i++)
+		{
+			int ordinal = i;
+			find(ordinal).forEach(value -> buffer.add(this.schema.getColumn(ordinal).assignValue(value)));
+		}
+		return buffer.result();
+	}
+	
+	/**
+	 * @return A table model with the same attributes as this model. The table model can be 
+	 * used in database operations.
+	 */
+	public TableModel toTableModel()
+	{
+		return new TableModel(getTable(), getAttributes());
+	}
+}
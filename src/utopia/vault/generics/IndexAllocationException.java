@@ -0,0 +1,31 @@
+package utopia.vault.generics;
+
+/**
+ * These exceptions are thrown when a new index can't be allocated for a table row. These 
+ * exceptions are considered to be run time exceptions
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class IndexAllocationException extends RuntimeException
+{
+	private static final long serialVersionUID = 2926517604937518253L;
+
+	/**
+	 * Creates a new exception
+	 * @param message The message sent along with the exception
+	 */
+	public IndexAllocationException(String message)
+	{
+		super(message);
+	}
+	
+	/**
+	 * Creates a new exception
+	 * @param message The message sent along with the exception
+	 * @param cause The exception that lead to this exception
+	 */
+	public IndexAllocationException(String message, Throwable cause)
+	{
+		super(message, cause);
+	}
+}
@@ -0,0 +1,22 @@
+package utopia.vault.generics;
+
+import utopia.flow.generics.Value;
+
+/**
+ * Index allocators provide primary keys for new table rows before they are inserted. This 
+ * way the database doesn't need to generate the keys and they don't need to be read back 
+ * after each insert.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public interface IndexAllocator
+{
+	/**
+	 * Allocates a new index for a row in the provided table. The same index must never be 
+	 * returned twice for the same table.
+	 * @param table The table the index is allocated for
+	 * @return A new unused index for the table
+	 * @throws IndexAllocationException If the index couldn't be allocated
+	 */
+	public Value allocateIndex(Table table) throws IndexAllocationException;
+}
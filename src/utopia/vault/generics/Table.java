@@ -21,10 +21,13 @@ public class Table
 	private VariableNameMapping nameMapping;
 	private ColumnInitialiser columnInitialiser;
 	private Option<TableReferenceReader> referenceReader;
+	private Option<IndexAllocator> indexAllocator = Option.none();
+	private Option<Column> versionColumn = Option.none();
 	
 	private final Lazy<ImmutableList<Column>> columns = new Lazy<>(this::readColumns);
 	private final Lazy<Option<Column>> primaryColumn = new Lazy<>(() -> getColumns().find(column -> column.isPrimary()));
 	private final Lazy<ModelDeclaration> declaration = new Lazy<>(() -> new ModelDeclaration(ImmutableList.of(getColumns())));
+	private final Lazy<TableSchema> schema = new Lazy<>(() -> new TableSchema(this));
 	private ImmutableMap<Table, ImmutableList<TableReference>> references = ImmutableMap.empty();
 	
 	
@@ -186,6 +189,55 @@ public class Table
 		return this.declaration.get();
 	}
 	
+	/**
+	 * @return A schema that assigns an ordinal to each of this table's columns. The same 
+	 * schema instance is returned on each call.
+	 * @throws TableInitialisationException If the table's columns couldn't be initialised
+	 */
+	public TableSchema getSchema() throws TableInitialisationException
+	{
+		return this.schema.get();
+	}
+	
+	/**
+	 * @return The allocator that provides indices for new rows in this table. None if the 
+	 * indices are provided by the database or by the inserted models themselves.
+	 */
+	public Option<IndexAllocator> getIndexAllocator()
+	{
+		return this.indexAllocator;
+	}
+	
+	/**
+	 * Specifies an allocator that provides indices for new rows in this table. When an 
+	 * allocator is used, inserts don't need to read back generated keys.
+	 * @param allocator The index allocator used for this table
+	 */
+	public void setIndexAllocator(IndexAllocator allocator)
+	{
+		this.indexAllocator = Option.some(allocator);
+	}
+	
+	/**
+	 * @return The column that holds the row version number used in optimistic locking. None 
+	 * if the table doesn't use optimistic locking.
+	 */
+	public Option<Column> getVersionColumn()
+	{
+		return this.versionColumn;
+	}
+	
+	/**
+	 * Specifies the column that holds the row version number. When a version column is 
+	 * specified, model updates only succeed when the row still has the model's version and 
+	 * each update increments the version.
+	 * @param column A numeric column in this table
+	 */
+	public void setVersionColumn(Column column)
+	{
+		this.versionColumn = Option.some(column);
+	}
+	
 	
 	// OTHER METHODS	----------------
 	
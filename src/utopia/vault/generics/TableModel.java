@@ -1,6 +1,9 @@
 package utopia.vault.generics;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 
 import utopia.flow.generics.Model;
 import utopia.flow.generics.Value;
@@ -21,6 +24,8 @@ public class TableModel extends Model<ColumnVariable> implements IndexedModel
 	// ATTRIBUTES	---------------
 	
 	private Table table;
+	// Attribute name -> value when the model was last read from or written to the database
+	private Map<String, Value> persistedValues = new HashMap<>();
 	
 	
 	// CONSTRUCTOR	---------------
@@ -66,6 +71,7 @@ public class TableModel extends Model<ColumnVariable> implements IndexedModel
 	{
 		super(other);
 		this.table = other.table;
+		this.persistedValues.putAll(other.persistedValues);
 	}
 	
 	/**
@@ -196,4 +202,76 @@ public class TableModel extends Model<ColumnVariable> implements IndexedModel
 	{
 		return getIndexAttributeOption().exists(att -> !att.isNull());
 	}
+	
+	/**
+	 * @return The attributes that have been modified since the model was last read from or 
+	 * written to the database. If the model hasn't been read or written yet, all of its 
+	 * attributes are considered modified.
+	 */
+	public ImmutableList<ColumnVariable> getDirtyAttributes()
+	{
+		return getAttributes().filter(att -> !this.persistedValues.containsKey(att.getName()) || 
+				!valuesAreEqual(this.persistedValues.get(att.getName()), att.getValue()));
+	}
+	
+	/**
+	 * @return Whether the model has attributes that have been modified since the model was 
+	 * last read from or written to the database
+	 */
+	public boolean isDirty()
+	{
+		return !getDirtyAttributes().isEmpty();
+	}
+	
+	/**
+	 * Marks the model's current attribute values as the values stored in the database. This 
+	 * is done automatically when the model is read or written through {@link utopia.vault.database.Database}.
+	 */
+	public void markClean()
+	{
+		markClean(getAttributes());
+	}
+	
+	/**
+	 * Marks the current values of some attributes as the values stored in the database
+	 * @param attributes The attributes that were read from or written to the database
+	 */
+	public void markClean(ImmutableList<? extends ColumnVariable> attributes)
+	{
+		for (ColumnVariable att : attributes)
+		{
+			this.persistedValues.put(att.getName(), att.getValue());
+		}
+	}
+	
+	/**
+	 * Marks all of the model's attributes as modified, so that they will all be written 
+	 * during the next update
+	 */
+	public void markDirty()
+	{
+		this.persistedValues.clear();
+	}
+	
+	/**
+	 * Marks some of the model's attributes as modified, so that they will be written during 
+	 * the next update
+	 * @param attributes The attributes that are marked as modified
+	 */
+	public void markDirty(ImmutableList<? extends ColumnVariable> attributes)
+	{
+		for (ColumnVariable att : attributes)
+		{
+			this.persistedValues.remove(att.getName());
+		}
+	}
+	
+	private static boolean valuesAreEqual(Value first, Value second)
+	{
+		if (first.isNull() || second.isNull())
+			return first.isNull() && second.isNull();
+		else
+			return first.getType().equals(second.getType()) && 
+					Objects.equals(first.getObjectValue(), second.getObjectValue());
+	}
 }
@@ -0,0 +1,139 @@
+package utopia.vault.generics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import utopia.flow.structure.ImmutableList;
+import utopia.flow.structure.Option;
+import utopia.vault.generics.Table.NoSuchColumnException;
+
+/**
+ * A table schema assigns each column of a table a fixed ordinal, so that row data can be 
+ * stored in arrays instead of attribute lists. A single schema is shared by all rows of 
+ * a table.
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ * @see Table#getSchema()
+ */
+public class TableSchema
+{
+	// ATTRIBUTES	------------------
+	
+	private final Table table;
+	private final Column[] columns;
+	// Lower case variable name -> ordinal
+	private final Map<String, Integer> variableOrdinals;
+	private final int primaryOrdinal;
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new schema. Please use {@link Table#getSchema()} instead of creating new 
+	 * schemas.
+	 * @param table The table described by this schema
+	 * @throws TableInitialisationException If the table's columns couldn't be initialised
+	 */
+	TableSchema(Table table) throws TableInitialisationException
+	{
+		this.table = table;
+		
+		ImmutableList<Column> tableColumns = table.getColumns();
+		this.columns = new Column[tableColumns.size()];
+		this.variableOrdinals = new HashMap<>(tableColumns.size() * 2);
+		
+		int primary = -1;
+		for (int i = 0; i < this.columns.length; i++)
+		{
+			Column column = tableColumns.get(i);
+			this.columns[i] = column;
+			this.variableOrdinals.put(column.getName().toLowerCase(), i);
+			if (column.isPrimary())
+				primary = i;
+		}
+		this.primaryOrdinal = primary;
+	}
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * @return The table described by this schema
+	 */
+	public Table getTable()
+	{
+		return this.table;
+	}
+	
+	/**
+	 * @return The number of columns in the table
+	 */
+	public int getColumnCount()
+	{
+		return this.columns.length;
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	/**
+	 * @param ordinal A column ordinal
+	 * @return The column with the provided ordinal
+	 */
+	public Column getColumn(int ordinal)
+	{
+		return this.columns[ordinal];
+	}
+	
+	/**
+	 * Finds the ordinal of a column
+	 * @param variableName The variable name of the column (case-insensitive)
+	 * @return The ordinal of the column. None if the table doesn't have such a column.
+	 */
+	public Option<Integer> findOrdinal(String variableName)
+	{
+		return new Option<>(this.variableOrdinals.get(variableName.toLowerCase()));
+	}
+	
+	/**
+	 * Finds the ordinal of a column
+	 * @param variableName The variable name of the column (case-insensitive)
+	 * @return The ordinal of the column
+	 * @throws NoSuchColumnException If the table doesn't have such a column
+	 */
+	public int getOrdinal(String variableName) throws NoSuchColumnException
+	{
+		Integer ordinal = this.variableOrdinals.get(variableName.toLowerCase());
+		if (ordinal == null)
+			throw new NoSuchColumnException(this.table + " doesn't contain a column with variable name " + 
+					variableName);
+		else
+			return ordinal;
+	}
+	
+	/**
+	 * Finds the ordinal of a column
+	 * @param column A column in this schema's table
+	 * @return The ordinal of the column
+	 * @throws NoSuchColumnException If the column isn't part of this schema's table
+	 */
+	public int getOrdinal(Column column) throws NoSuchColumnException
+	{
+		int ordinal = getOrdinal(column.getName());
+		if (!this.columns[ordinal].equals(column))
+			throw new NoSuchColumnException(column + " isn't a column of " + this.table);
+		return ordinal;
+	}
+	
+	/**
+	 * @return The ordinal of the table's primary column
+	 * @throws NoSuchColumnException If the table doesn't have a primary column
+	 */
+	public int getPrimaryOrdinal() throws NoSuchColumnException
+	{
+		if (this.primaryOrdinal < 0)
+			throw new NoSuchColumnException("Table " + this.table + " doesn't have a primary column");
+		else
+			return this.primaryOrdinal;
+	}
+}
@@ -0,0 +1,63 @@
+package utopia.vault.test;
+
+import java.time.Duration;
+
+import utopia.vault.database.CircuitBreaker;
+import utopia.vault.database.CircuitBreaker.CircuitOpenException;
+
+/**
+ * This class tests the state transitions of a circuit breaker
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class CircuitBreakerTest
+{
+	@SuppressWarnings("javadoc")
+	public static void main(String[] args) throws InterruptedException
+	{
+		CircuitBreaker breaker = new CircuitBreaker(2, Duration.ofMillis(200));
+		
+		// Expected: CLOSED, Allowed, CLOSED, OPEN
+		System.out.println(breaker.getState());
+		attempt(breaker);
+		breaker.recordFailure();
+		System.out.println(breaker.getState());
+		breaker.recordFailure();
+		System.out.println(breaker.getState());
+		
+		// Expected: Rejected
+		attempt(breaker);
+		
+		// After the cool-down, a single trial is allowed. Expected: Allowed, HALF_OPEN, Rejected
+		Thread.sleep(250);
+		attempt(breaker);
+		System.out.println(breaker.getState());
+		attempt(breaker);
+		
+		// A failed trial opens the breaker again. Expected: OPEN, Rejected
+		breaker.recordFailure();
+		System.out.println(breaker.getState());
+		attempt(breaker);
+		
+		// A successful trial closes the breaker. Expected: Allowed, CLOSED, 0, None
+		Thread.sleep(250);
+		attempt(breaker);
+		breaker.recordSuccess();
+		System.out.println(breaker.getState());
+		System.out.println(breaker.getConsecutiveFailures());
+		System.out.println(breaker.getRetryTime());
+	}
+	
+	private static void attempt(CircuitBreaker breaker)
+	{
+		try
+		{
+			breaker.beforeAttempt();
+			System.out.println("Allowed");
+		}
+		catch (CircuitOpenException e)
+		{
+			System.out.println("Rejected until " + e.getRetryTime());
+		}
+	}
+}
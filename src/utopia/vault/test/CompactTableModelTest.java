@@ -0,0 +1,84 @@
+package utopia.vault.test;
+
+import utopia.flow.generics.Value;
+import utopia.flow.structure.ImmutableList;
+import utopia.flow.structure.Option;
+import utopia.vault.generics.BasicSqlDataType;
+import utopia.vault.generics.Column;
+import utopia.vault.generics.ColumnInitialiser;
+import utopia.vault.generics.ColumnNameIsVariableNameRule;
+import utopia.vault.generics.CompactTableModel;
+import utopia.vault.generics.Table;
+import utopia.vault.generics.Table.NoSuchColumnException;
+import utopia.vault.generics.TableInitialisationException;
+import utopia.vault.generics.VariableNameMapping;
+import utopia.vault.generics.VariableNameMapping.NoVariableForColumnException;
+
+/**
+ * This class tests setting, finding and removing the attributes of a compact table model
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class CompactTableModelTest
+{
+	@SuppressWarnings("javadoc")
+	public static void main(String[] args) throws NoSuchColumnException
+	{
+		BasicSqlDataType.initialise();
+		
+		ColumnInitialiser initializer = new ColumnInitialiser()
+		{
+			@Override
+			public ImmutableList<Column> generateColumns(Table table) throws TableInitialisationException
+			{
+				try
+				{
+					Column c1 = new Column(table, "c1", BasicSqlDataType.INT, false, true, true, Value.EMPTY);
+					Column c2 = new Column(table, "c2", BasicSqlDataType.VARCHAR, true, false, false, 
+							Value.String("default"));
+					
+					return ImmutableList.withValues(c1, c2);
+				}
+				catch (NoVariableForColumnException e)
+				{
+					throw new TableInitialisationException("Column creation failed", e);
+				}
+			}
+		};
+		
+		VariableNameMapping mapping = new VariableNameMapping();
+		mapping.addRule(ColumnNameIsVariableNameRule.getInstance());
+		
+		Table table = new Table("db", "table", mapping, initializer, Option.none());
+		
+		CompactTableModel model = new CompactTableModel(table);
+		
+		// Expected: false, None, default
+		System.out.println(model.contains("c2"));
+		System.out.println(model.find("c2"));
+		System.out.println(model.get("c2"));
+		
+		// The value is cast to the column type. Expected: 3, true
+		model.set("c1", Value.String("3"));
+		System.out.println(model.getIndex());
+		System.out.println(model.hasIndex());
+		
+		// A null value is different from an unset value. Expected: true, Some(null)
+		model.set("C2", Value.NullValue(BasicSqlDataType.VARCHAR));
+		System.out.println(model.contains("c2"));
+		System.out.println(model.find("c2"));
+		
+		// Expected: false, default
+		model.remove("c2");
+		System.out.println(model.contains("c2"));
+		System.out.println(model.get("c2"));
+		
+		// Expected: None
+		System.out.println(model.find("c3"));
+		
+		// Expected: The same attributes in both
+		model.set("c2", Value.String("text"));
+		System.out.println(model);
+		System.out.println(model.toTableModel());
+	}
+}
@@ -0,0 +1,53 @@
+package utopia.vault.test;
+
+import utopia.vault.util.LatencyHistogram;
+
+/**
+ * This class tests the bucketing and the percentiles of a latency histogram
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class LatencyHistogramTest
+{
+	@SuppressWarnings("javadoc")
+	public static void main(String[] args)
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		
+		// Expected: PT0S
+		System.out.println(histogram.getPercentile(0.5));
+		
+		histogram.record(-5);
+		histogram.record(0);
+		histogram.record(1);
+		histogram.record(3);
+		histogram.record(4);
+		histogram.record(1000);
+		histogram.record(1000000);
+		
+		// Expected: 0: 2, 1: 1, 2: 1, 3: 1, 10: 1, 20: 1
+		long[] counts = histogram.getBucketCounts();
+		for (int i = 0; i < counts.length; i++)
+		{
+			if (counts[i] > 0)
+				System.out.println(i + ": " + counts[i]);
+		}
+		
+		// Expected: 7, PT0.000143001S, PT0.001S
+		System.out.println(histogram.getCount());
+		System.out.println(histogram.getMean());
+		System.out.println(histogram.getMax());
+		
+		// The percentiles are bucket upper bounds, limited by the largest value. 
+		// Expected: PT0.000000001S, PT0.000000004S, PT0.000001024S, PT0.001S
+		System.out.println(histogram.getPercentile(0));
+		System.out.println(histogram.getPercentile(0.5));
+		System.out.println(histogram.getPercentile(0.8));
+		System.out.println(histogram.getPercentile(1));
+		
+		// Expected: 0, PT0S
+		histogram.reset();
+		System.out.println(histogram.getCount());
+		System.out.println(histogram.getMax());
+	}
+}
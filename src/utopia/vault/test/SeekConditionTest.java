@@ -0,0 +1,86 @@
+package utopia.vault.test;
+
+import utopia.flow.generics.Value;
+import utopia.flow.structure.ImmutableList;
+import utopia.flow.structure.Option;
+import utopia.vault.database.OrderBy;
+import utopia.vault.database.SeekCondition;
+import utopia.vault.database.StatementParseException;
+import utopia.vault.generics.BasicSqlDataType;
+import utopia.vault.generics.Column;
+import utopia.vault.generics.ColumnInitialiser;
+import utopia.vault.generics.ColumnNameIsVariableNameRule;
+import utopia.vault.generics.Table;
+import utopia.vault.generics.TableInitialisationException;
+import utopia.vault.generics.VariableNameMapping;
+import utopia.vault.generics.VariableNameMapping.NoVariableForColumnException;
+
+/**
+ * This class tests the sql and the values of seek conditions with different orderings
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class SeekConditionTest
+{
+	@SuppressWarnings("javadoc")
+	public static void main(String[] args) throws StatementParseException
+	{
+		BasicSqlDataType.initialise();
+		
+		ColumnInitialiser initializer = new ColumnInitialiser()
+		{
+			@Override
+			public ImmutableList<Column> generateColumns(Table table) throws TableInitialisationException
+			{
+				try
+				{
+					Column c1 = new Column(table, "c1", BasicSqlDataType.INT, false, true, true, Value.EMPTY);
+					Column c2 = new Column(table, "c2", BasicSqlDataType.INT, false, false, false, Value.EMPTY);
+					Column c3 = new Column(table, "c3", BasicSqlDataType.VARCHAR, false, false, false, Value.EMPTY);
+					
+					return ImmutableList.withValues(c1, c2, c3);
+				}
+				catch (NoVariableForColumnException e)
+				{
+					throw new TableInitialisationException("Column creation failed", e);
+				}
+			}
+		};
+		
+		VariableNameMapping mapping = new VariableNameMapping();
+		mapping.addRule(ColumnNameIsVariableNameRule.getInstance());
+		
+		Table table = new Table("db", "table", mapping, initializer, Option.none());
+		
+		Column c1 = table.getColumnWithVariableName("c1");
+		Column c2 = table.getColumnWithVariableName("c2");
+		Column c3 = table.getColumnWithVariableName("c3");
+		
+		// Expected: c1 > ?, values: 3
+		test(new OrderBy(c1, true), ImmutableList.withValue(Value.Integer(3)));
+		// Expected: (c2, c1) < (?, ?), values: 5, 3
+		test(new OrderBy(false, c2, c1), ImmutableList.withValues(Value.Integer(5), Value.Integer(3)));
+		// Expected: ((c3 > ?) OR (c3 = ? AND c2 < ?) OR (c3 = ? AND c2 = ? AND c1 > ?)), 
+		// values: a, a, 5, a, 5, 3
+		test(new OrderBy(new Column[] {c3, c2, c1}, new Boolean[] {true, false, true}), 
+				ImmutableList.withValues(Value.String("a"), Value.Integer(5), Value.Integer(3)));
+		
+		// Expected: Failure
+		try
+		{
+			new SeekCondition(new OrderBy(c1, c2), ImmutableList.withValue(Value.Integer(3))).toSql();
+			System.out.println("Mismatching key size was accepted");
+		}
+		catch (StatementParseException e)
+		{
+			System.out.println("Failure: " + e.getMessage());
+		}
+	}
+	
+	private static void test(OrderBy order, ImmutableList<Value> lastKey) throws StatementParseException
+	{
+		SeekCondition where = new SeekCondition(order, lastKey);
+		System.out.println(where.toSql());
+		System.out.println(where.getValues());
+	}
+}
@@ -0,0 +1,77 @@
+package utopia.vault.test;
+
+import utopia.flow.generics.Value;
+import utopia.flow.structure.ImmutableList;
+import utopia.flow.structure.Option;
+import utopia.vault.database.ValueAssignment;
+import utopia.vault.database.ValueAssignment.ArithmeticOperator;
+import utopia.vault.generics.BasicSqlDataType;
+import utopia.vault.generics.Column;
+import utopia.vault.generics.ColumnInitialiser;
+import utopia.vault.generics.ColumnNameIsVariableNameRule;
+import utopia.vault.generics.Table;
+import utopia.vault.generics.TableInitialisationException;
+import utopia.vault.generics.VariableNameMapping;
+import utopia.vault.generics.VariableNameMapping.NoVariableForColumnException;
+
+/**
+ * This class tests the sql and values of expression based value assignments
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class ValueAssignmentTest
+{
+	@SuppressWarnings("javadoc")
+	public static void main(String[] args)
+	{
+		BasicSqlDataType.initialise();
+		
+		ColumnInitialiser initializer = new ColumnInitialiser()
+		{
+			@Override
+			public ImmutableList<Column> generateColumns(Table table) throws TableInitialisationException
+			{
+				try
+				{
+					Column c1 = new Column(table, "c1", BasicSqlDataType.INT, false, true, true, Value.EMPTY);
+					Column c2 = new Column(table, "c2", BasicSqlDataType.INT, false, false, false, Value.EMPTY);
+					Column c3 = new Column(table, "c3", BasicSqlDataType.INT, true, false, false, Value.EMPTY);
+					
+					return ImmutableList.withValues(c1, c2, c3);
+				}
+				catch (NoVariableForColumnException e)
+				{
+					throw new TableInitialisationException("Column creation failed", e);
+				}
+			}
+		};
+		
+		VariableNameMapping mapping = new VariableNameMapping();
+		mapping.addRule(ColumnNameIsVariableNameRule.getInstance());
+		
+		Table table = new Table("db", "table", mapping, initializer, Option.none());
+		
+		Column c2 = table.getColumnWithVariableName("c2");
+		Column c3 = table.getColumnWithVariableName("c3");
+		
+		// Expected:  SET table.c2=table.c2 + ?, values: 1
+		test(ValueAssignment.createIncrement(c2, Value.Integer(1)));
+		
+		ValueAssignment set = new ValueAssignment(false);
+		set.appendDecrement(c2, Value.Integer(2));
+		set.appendGreatest(c3, Value.Integer(10));
+		set.appendCoalesce(c3, Value.Integer(0));
+		set.appendArithmetic(c3, c2, ArithmeticOperator.PLUS, c3);
+		set.appendExpression(c2, "IF(" + c2.getColumnNameWithTable() + " > ?, ?, " + 
+				c2.getColumnNameWithTable() + ")", ImmutableList.withValues(Value.Integer(5), Value.Integer(5)));
+		// Expected: decrement, GREATEST, COALESCE, column arithmetic and IF, values: 2, 10, 0, 5, 5
+		test(set);
+	}
+	
+	private static void test(ValueAssignment set)
+	{
+		System.out.println(set.toSetClause());
+		System.out.println(set.getValues());
+		System.out.println(set.getDebugDescription());
+	}
+}
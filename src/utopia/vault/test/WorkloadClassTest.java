@@ -0,0 +1,47 @@
+package utopia.vault.test;
+
+import utopia.vault.database.WorkloadClass;
+
+/**
+ * This class tests how the workload class limits are capped
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class WorkloadClassTest
+{
+	@SuppressWarnings("javadoc")
+	public static void main(String[] args)
+	{
+		WorkloadClass small = new WorkloadClass("small", 0.01, 0);
+		WorkloadClass large = new WorkloadClass("large", 0.99, 0);
+		
+		// Expected: 8, 5
+		System.out.println(WorkloadClass.INTERACTIVE.getLimit(10));
+		System.out.println(WorkloadClass.BATCH.getLimit(10));
+		
+		// A class always gets at least one lease. Expected: 1
+		System.out.println(small.getLimit(10));
+		// A class never gets the whole capacity. Expected: 9
+		System.out.println(large.getLimit(10));
+		// Expected: 1, 0
+		System.out.println(large.getLimit(1));
+		System.out.println(large.getLimit(0));
+		
+		// Expected: Failure, Failure
+		create(0);
+		create(1);
+	}
+	
+	private static void create(double maxShare)
+	{
+		try
+		{
+			new WorkloadClass("invalid", maxShare, 0);
+			System.out.println("Max share " + maxShare + " was accepted");
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.out.println("Failure: " + e.getMessage());
+		}
+	}
+}
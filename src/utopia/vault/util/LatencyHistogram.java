@@ -0,0 +1,144 @@
+package utopia.vault.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram records durations into buckets whose upper bounds are powers of two 
+ * nanoseconds. Recording a value doesn't allocate or lock, so the histogram can be used on 
+ * hot paths by multiple threads at once. The percentiles are therefore approximate (within 
+ * a factor of two).
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class LatencyHistogram
+{
+	// ATTRIBUTES	------------------
+	
+	private static final int BUCKETS = 64;
+	
+	// Bucket i contains the values in range [2^(i-1), 2^i) ns. Bucket 0 contains zeros.
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	/**
+	 * Creates a new empty histogram
+	 */
+	public LatencyHistogram()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			this.buckets[i] = new LongAdder();
+		}
+	}
+	
+	
+	// ACCESSORS	------------------
+	
+	/**
+	 * @return The number of recorded values
+	 */
+	public long getCount()
+	{
+		return this.count.sum();
+	}
+	
+	/**
+	 * @return The average of the recorded values. Zero if no values have been recorded.
+	 */
+	public Duration getMean()
+	{
+		long count = this.count.sum();
+		return count == 0 ? Duration.ZERO : Duration.ofNanos(this.totalNanos.sum() / count);
+	}
+	
+	/**
+	 * @return The largest recorded value
+	 */
+	public Duration getMax()
+	{
+		return Duration.ofNanos(this.maxNanos.get());
+	}
+	
+	/**
+	 * @return The number of values in each bucket. The upper bound of bucket i is 2^i ns.
+	 */
+	public long[] getBucketCounts()
+	{
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			counts[i] = this.buckets[i].sum();
+		}
+		return counts;
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	/**
+	 * Records a value
+	 * @param nanos The recorded duration in nanoseconds. Negative values are recorded as zero.
+	 */
+	public void record(long nanos)
+	{
+		long value = Math.max(0, nanos);
+		this.buckets[BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+		this.count.increment();
+		this.totalNanos.add(value);
+		this.maxNanos.accumulate(value);
+	}
+	
+	/**
+	 * Finds an approximate percentile of the recorded values
+	 * @param percentile The requested percentile [0, 1] (e.g. 0.99)
+	 * @return The upper bound of the bucket that contains the percentile. Zero if no values 
+	 * have been recorded.
+	 */
+	public Duration getPercentile(double percentile)
+	{
+		long[] counts = getBucketCounts();
+		long total = 0;
+		for (long c : counts)
+		{
+			total += c;
+		}
+		if (total == 0)
+			return Duration.ZERO;
+		
+		long target = (long) Math.ceil(total * Math.min(1, Math.max(0, percentile)));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += counts[i];
+			if (seen >= target && seen > 0)
+				return Duration.ofNanos(Math.min(upperBound(i), this.maxNanos.get()));
+		}
+		return getMax();
+	}
+	
+	/**
+	 * Clears all recorded values
+	 */
+	public void reset()
+	{
+		for (LongAdder bucket : this.buckets)
+		{
+			bucket.reset();
+		}
+		this.count.reset();
+		this.totalNanos.reset();
+		this.maxNanos.reset();
+	}
+	
+	private static long upperBound(int bucket)
+	{
+		return bucket >= 63 ? Long.MAX_VALUE : 1L << bucket;
+	}
+}
@@ -0,0 +1,117 @@
+package utopia.vault.util;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The shared scheduler runs the periodic and delayed background tasks of this library on a 
+ * small pool of daemon threads, so that the tasks don't need to start threads of their own. 
+ * The scheduled tasks should be short and shouldn't block for long periods of time. Blocking 
+ * work, such as database access, should be handed off to a worker executor 
+ * (see {@link #newWorkerExecutor(String, int)}).
+ * @author Mikko Hilpinen
+ * @since 18.10.2026
+ */
+public class SharedScheduler
+{
+	// ATTRIBUTES	------------------
+	
+	private static final int THREADS = 2;
+	
+	private static final AtomicInteger threadCounter = new AtomicInteger();
+	
+	
+	// CONSTRUCTOR	------------------
+	
+	private SharedScheduler()
+	{
+		// Static interface
+	}
+	
+	
+	// OTHER METHODS	--------------
+	
+	/**
+	 * @return The executor service used for scheduling the tasks. The executor is started 
+	 * when first requested.
+	 */
+	public static ScheduledExecutorService getExecutor()
+	{
+		// The holder is initialised on first access, so no locking is needed here
+		return ExecutorHolder.EXECUTOR;
+	}
+	
+	/**
+	 * Creates a new executor for blocking work, for example the database writes triggered by 
+	 * the scheduled tasks. The threads are daemons and they stop when the executor has been 
+	 * idle for a while. The caller is responsible for shutting the executor down.
+	 * @param name The name prefix of the executor's threads
+	 * @param threads The maximum number of threads the executor uses
+	 * @return A new executor
+	 */
+	public static ExecutorService newWorkerExecutor(String name, int threads)
+	{
+		AtomicInteger workerCounter = new AtomicInteger();
+		ThreadPoolExecutor worker = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<>(), r -> 
+		{
+			Thread thread = new Thread(r, name + "-" + workerCounter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		worker.allowCoreThreadTimeOut(true);
+		return worker;
+	}
+	
+	/**
+	 * Schedules a task to be run once after a delay
+	 * @param task The task that is run
+	 * @param delay The delay before the task is run
+	 * @return A future that can be used for cancelling the task
+	 */
+	public static ScheduledFuture<?> schedule(Runnable task, Duration delay)
+	{
+		return getExecutor().schedule(task, delay.toNanos(), TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Schedules a task to be run repeatedly. The interval is counted from the end of the 
+	 * previous run.
+	 * @param task The task that is run
+	 * @param interval The delay between the runs (also used as the initial delay)
+	 * @return A future that can be used for cancelling the task
+	 */
+	public static ScheduledFuture<?> scheduleRepeating(Runnable task, Duration interval)
+	{
+		long nanos = interval.toNanos();
+		return getExecutor().scheduleWithFixedDelay(task, nanos, nanos, TimeUnit.NANOSECONDS);
+	}
+	
+	private static ScheduledThreadPoolExecutor createExecutor()
+	{
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(THREADS, r ->
+		{
+			Thread thread = new Thread(r, "Vault-Scheduler-" + threadCounter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		// Cancelled tasks are removed so that they don't pile up in the queue
+		executor.setRemoveOnCancelPolicy(true);
+		return executor;
+	}
+	
+	
+	// NESTED CLASSES	--------------
+	
+	private static class ExecutorHolder
+	{
+		private static final ScheduledThreadPoolExecutor EXECUTOR = createExecutor();
+	}
+}